@@ -0,0 +1,50 @@
+package frc.lib.math;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import frc.robot.Constants;
+
+/**
+ * The unit conversions every swerve module runs several times a loop.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConversionsBenchmark {
+    //Not final so the JIT can't fold them
+    double counts = 123456;
+    double velocity = 3.2;
+    double degrees = 137.5;
+
+    @Benchmark
+    public double falconToMPS() {
+        return Conversions.falconToMPS(counts, Constants.kSwerve.wheelCircumference, Constants.kSwerve.driveGearRatio);
+    }
+
+    @Benchmark
+    public double MPSToFalcon() {
+        return Conversions.MPSToFalcon(velocity, Constants.kSwerve.wheelCircumference, Constants.kSwerve.driveGearRatio);
+    }
+
+    @Benchmark
+    public double falconToMeters() {
+        return Conversions.falconToMeters(counts, Constants.kSwerve.wheelCircumference, Constants.kSwerve.driveGearRatio);
+    }
+
+    @Benchmark
+    public double degreesToFalcon() {
+        return Conversions.degreesToFalcon(degrees, Constants.kSwerve.angleGearRatio);
+    }
+
+    @Benchmark
+    public double falconToDegrees() {
+        return Conversions.falconToDegrees(counts, Constants.kSwerve.angleGearRatio);
+    }
+}
@@ -0,0 +1,44 @@
+package frc.lib.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * CTREModuleState.optimize, with the module angle both near zero and after many turns
+ * (the continuous Falcon angle keeps growing while driving).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CTREModuleStateBenchmark {
+    @Param({"30", "-1830"})
+    public double currentDegrees;
+
+    @Param({"45", "250"})
+    public double desiredDegrees;
+
+    private Rotation2d currentAngle;
+    private SwerveModuleState desiredState;
+
+    @Setup
+    public void setup() {
+        currentAngle = Rotation2d.fromDegrees(currentDegrees);
+        desiredState = new SwerveModuleState(2.5, Rotation2d.fromDegrees(desiredDegrees));
+    }
+
+    @Benchmark
+    public SwerveModuleState optimize() {
+        return CTREModuleState.optimize(desiredState, currentAngle);
+    }
+}
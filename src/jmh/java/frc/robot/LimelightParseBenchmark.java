@@ -0,0 +1,42 @@
+package frc.robot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The parse half of LimelightHelpers.getLatestResults(), on a two-tag json dump. Reading the dump
+ * from NetworkTables is left out, the mapper is configured the same way LimelightHelpers does it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LimelightParseBenchmark {
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private String json;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/limelight_results.json")) {
+            json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public LimelightHelpers.LimelightResults parse() throws JsonProcessingException {
+        return mapper.readValue(json, LimelightHelpers.LimelightResults.class);
+    }
+}
@@ -0,0 +1,78 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.lib.util.AccelLimiter;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Swerve.drive() through SwerveModule.setDesiredState() with the devices taken out: both call the
+ * same static math this does ({@link Swerve#calculateModuleStates} and
+ * {@link SwerveModule#calculateSetpoint}), the gyro is a fixed cached yaw, module angles are fields and
+ * the setpoints that would go to the Talons are sunk into the blackhole. One teleop loop per op, the
+ * stick flips direction every op so the acceleration limit (set to the arm out at a high node) always cuts in.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SwerveDriveBenchmark {
+    private final SimpleMotorFeedforward feedforward = new SimpleMotorFeedforward(Constants.kSwerve.driveKS, Constants.kSwerve.driveKV, Constants.kSwerve.driveKA);
+    private final AccelLimiter accelLimiter = new AccelLimiter();
+    private final SwerveModule.Setpoint setpoint = new SwerveModule.Setpoint();
+
+    Translation2d forward = new Translation2d(2.1, -1.3);
+    Translation2d back = new Translation2d(-2.1, 1.3);
+    boolean flip = false;
+    double rotation = 1.7;
+    Rotation2d yaw = Rotation2d.fromDegrees(57);
+    double timestamp = 0;
+    Rotation2d[] moduleAngles = {
+        Rotation2d.fromDegrees(12), Rotation2d.fromDegrees(-400), Rotation2d.fromDegrees(95), Rotation2d.fromDegrees(181)
+    };
+    Rotation2d[] lastAngles = moduleAngles.clone();
+
+    public SwerveDriveBenchmark() {
+        TippingModel tippingModel = new TippingModel(() -> 281.0, () -> 271000 / Constants.kTelescope.countsPerCm);
+        tippingModel.update();
+        accelLimiter.setEnvelope(
+            tippingModel.getMinAccelX(), tippingModel.getMaxAccelX(),
+            tippingModel.getMinAccelY(), tippingModel.getMaxAccelY());
+    }
+
+    @Benchmark
+    public void fieldRelativeClosedLoop(Blackhole bh) {
+        drive(true, false, bh);
+    }
+
+    @Benchmark
+    public void robotRelativeOpenLoop(Blackhole bh) {
+        drive(false, true, bh);
+    }
+
+    private void drive(boolean fieldRelative, boolean isOpenLoop, Blackhole bh) {
+        flip = !flip;
+        timestamp += 0.02;
+        SwerveModuleState[] swerveModuleStates = Swerve.calculateModuleStates(
+            accelLimiter, flip ? forward : back, rotation, fieldRelative, yaw.getCos(), yaw.getSin(), timestamp);
+
+        for (int i = 0; i < swerveModuleStates.length; i++) {
+            SwerveModule.calculateSetpoint(swerveModuleStates[i], moduleAngles[i], lastAngles[i], isOpenLoop, feedforward, setpoint);
+            lastAngles[i] = setpoint.angle;
+            bh.consume(setpoint.angleCounts);
+            bh.consume(setpoint.drive);
+            bh.consume(setpoint.feedforward);
+        }
+    }
+}
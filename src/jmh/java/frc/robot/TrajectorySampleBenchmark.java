@@ -0,0 +1,53 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.pathplanner.lib.PathConstraints;
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPoint;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * PathPlannerTrajectory.sample(), which the path following command calls every loop. The path is
+ * generated rather than loaded so the benchmark doesn't need the HAL to find the deploy folder;
+ * it is about the length of a grid-to-charge-station auto path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrajectorySampleBenchmark {
+    private PathPlannerTrajectory trajectory;
+    private double time = 0;
+
+    @Setup
+    public void setup() {
+        trajectory = PathPlanner.generatePath(
+            new PathConstraints(2, 2),
+            new PathPoint(new Translation2d(1.85, 4.4), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(180)),
+            new PathPoint(new Translation2d(4.0, 4.7), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(180)),
+            new PathPoint(new Translation2d(6.2, 3.9), Rotation2d.fromDegrees(-30), Rotation2d.fromDegrees(0)),
+            new PathPoint(new Translation2d(3.9, 2.75), Rotation2d.fromDegrees(180), Rotation2d.fromDegrees(0)));
+    }
+
+    /** Steps through the path on the loop period like the follower does, then wraps around. */
+    @Benchmark
+    public Trajectory.State sampleLoop() {
+        time += 0.02;
+        if (time > trajectory.getTotalTimeSeconds()) {
+            time = 0;
+        }
+        return trajectory.sample(time);
+    }
+}
@@ -0,0 +1,107 @@
+package frc.lib.util;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Limits how fast a field relative chassis velocity can change. The allowed acceleration is a box
+ * in the robot's frame (forward / back and left / right limits can differ), a request outside it
+ * is scaled down along its own direction so the robot still heads where the driver asked, just
+ * more slowly. Limits default to infinite, which passes the target straight through.
+ * Allocates nothing per call, results are read back with {@link #getVx()} and {@link #getVy()}.
+ */
+public final class AccelLimiter {
+    private static final double maxDt = 0.1; //a gap in calls isn't a license to jump
+
+    private double minX = Double.NEGATIVE_INFINITY;
+    private double maxX = Double.POSITIVE_INFINITY;
+    private double minY = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.POSITIVE_INFINITY;
+
+    private double vx = 0;
+    private double vy = 0;
+    private double lastTime = Double.NaN;
+    private boolean limited = false;
+
+    /**
+     * Robot frame acceleration limits, m/s^2. The mins are negative (or negative infinity).
+     */
+    public void setEnvelope(double minX, double maxX, double minY, double maxY) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    /**
+     * @param targetVx field relative, m/s
+     * @param targetVy field relative, m/s
+     * @param headingCos cos of the robot's field heading
+     * @param headingSin sin of the robot's field heading
+     */
+    public void calculate(double targetVx, double targetVy, double headingCos, double headingSin) {
+        calculate(targetVx, targetVy, headingCos, headingSin, Timer.getFPGATimestamp());
+    }
+
+    /**
+     * Same as {@link #calculate(double, double, double, double)} with an explicit timestamp (seconds),
+     * for running without the HAL.
+     */
+    public void calculate(double targetVx, double targetVy, double headingCos, double headingSin, double now) {
+        double dt = Double.isNaN(lastTime) ? 0 : Math.min(maxDt, now - lastTime);
+        lastTime = now;
+
+        double dvx = targetVx - vx;
+        double dvy = targetVy - vy;
+
+        //Into the robot's frame
+        double dvForward = dvx * headingCos + dvy * headingSin;
+        double dvLeft = -dvx * headingSin + dvy * headingCos;
+        double scale = Math.min(
+            axisScale(dvForward, minX, maxX, dt),
+            axisScale(dvLeft, minY, maxY, dt));
+
+        limited = scale < 1;
+        if (limited) {
+            vx += dvx * scale;
+            vy += dvy * scale;
+        } else {
+            vx = targetVx;
+            vy = targetVy;
+        }
+    }
+
+    /**
+     * @return how much of a velocity change along one axis fits in dt between the min and max accelerations
+     */
+    private static double axisScale(double change, double min, double max, double dt) {
+        if (change > 0 && max != Double.POSITIVE_INFINITY && change > max * dt) {
+            return max * dt / change;
+        }
+        if (change < 0 && min != Double.NEGATIVE_INFINITY && change < min * dt) {
+            return min * dt / change;
+        }
+        return 1;
+    }
+
+    /** Field relative, m/s */
+    public double getVx() {
+        return vx;
+    }
+
+    /** Field relative, m/s */
+    public double getVy() {
+        return vy;
+    }
+
+    /** True if the last {@link #calculate} had to cut the request down */
+    public boolean isLimited() {
+        return limited;
+    }
+
+    /** Takes up from a velocity commanded some other way, field relative m/s. */
+    public void reset(double vx, double vy) {
+        this.vx = vx;
+        this.vy = vy;
+        lastTime = Double.NaN;
+    }
+}
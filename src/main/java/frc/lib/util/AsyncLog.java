@@ -0,0 +1,82 @@
+package frc.lib.util;
+
+import edu.wpi.first.wpilibj.DataLogManager;
+
+/**
+ * Console / data log output that never blocks the robot loop.
+ * Messages go into a fixed ring buffer and a daemon thread does the string building and printing.
+ * If the buffer is full the message is dropped (and counted) rather than waiting.
+ */
+public final class AsyncLog {
+    private static final int capacity = 256;
+
+    private static final String[] messages = new String[capacity];
+    private static final double[] values = new double[capacity];
+    private static final boolean[] hasValue = new boolean[capacity];
+    private static int head = 0;
+    private static int size = 0;
+    private static int dropped = 0;
+    private static Thread worker;
+
+    private AsyncLog() {}
+
+    public static void log(String message) {
+        enqueue(message, 0, false);
+    }
+
+    /**
+     * Logs "message + value" without building the string on the caller's thread.
+     */
+    public static void log(String message, double value) {
+        enqueue(message, value, true);
+    }
+
+    /**
+     * @return messages dropped because the buffer was full
+     */
+    public static synchronized int getDropped() {
+        return dropped;
+    }
+
+    private static synchronized void enqueue(String message, double value, boolean withValue) {
+        if (worker == null) {
+            worker = new Thread(AsyncLog::run, "AsyncLog");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        if (size == capacity) {
+            dropped++;
+            return;
+        }
+        int tail = (head + size) % capacity;
+        messages[tail] = message;
+        values[tail] = value;
+        hasValue[tail] = withValue;
+        size++;
+        AsyncLog.class.notifyAll();
+    }
+
+    private static void run() {
+        while (true) {
+            String message;
+            double value;
+            boolean withValue;
+            synchronized (AsyncLog.class) {
+                while (size == 0) {
+                    try {
+                        AsyncLog.class.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                message = messages[head];
+                value = values[head];
+                withValue = hasValue[head];
+                messages[head] = null;
+                head = (head + 1) % capacity;
+                size--;
+            }
+            DataLogManager.log(withValue ? message + value : message);
+        }
+    }
+}
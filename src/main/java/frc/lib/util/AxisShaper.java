@@ -0,0 +1,118 @@
+package frc.lib.util;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Shapes one joystick axis, in this order:
+ * <ol>
+ * <li>deadband, rescaled so the output still starts at 0 at the edge of it</li>
+ * <li>exponential curve, sign(x) * |x|^exponent</li>
+ * <li>scale, times the precision scale while precision mode is on</li>
+ * <li>slew rate limit, with separate rates for speeding up and slowing down (per second of full scale)</li>
+ * </ol>
+ * Stages are set up with the chained setters and default to doing nothing. Holds a few doubles of
+ * state and allocates nothing per call, one instance per axis.
+ */
+public final class AxisShaper {
+    private double deadband = 0;
+    private double exponent = 1;
+    private double scale = 1;
+    private double precisionScale = 1;
+    private double accelRate = Double.POSITIVE_INFINITY;
+    private double decelRate = Double.POSITIVE_INFINITY;
+
+    private double last = 0;
+    private double lastTime = Double.NaN;
+
+    public AxisShaper deadband(double deadband) {
+        this.deadband = deadband;
+        return this;
+    }
+
+    public AxisShaper exponent(double exponent) {
+        this.exponent = exponent;
+        return this;
+    }
+
+    public AxisShaper scale(double scale) {
+        this.scale = scale;
+        return this;
+    }
+
+    /**
+     * @param precisionScale output multiplier while precision mode is on
+     */
+    public AxisShaper precision(double precisionScale) {
+        this.precisionScale = precisionScale;
+        return this;
+    }
+
+    /**
+     * @param accelRate how fast the output can move away from 0, per second
+     * @param decelRate how fast it can move back towards 0, usually faster so letting go stops quickly
+     */
+    public AxisShaper slew(double accelRate, double decelRate) {
+        this.accelRate = accelRate;
+        this.decelRate = decelRate;
+        return this;
+    }
+
+    /**
+     * Every stage, slew limited against the last call's output.
+     */
+    public double calculate(double input, boolean precision) {
+        double now = Timer.getFPGATimestamp();
+        double dt = Double.isNaN(lastTime) ? 0 : now - lastTime;
+        lastTime = now;
+        last = limit(last, shape(input, precision), dt, accelRate, decelRate);
+        return last;
+    }
+
+    public double calculate(double input) {
+        return calculate(input, false);
+    }
+
+    /**
+     * Deadband, curve and scale only, no state.
+     */
+    public double shape(double input, boolean precision) {
+        double magnitude = curve(Math.abs(input), deadband, exponent);
+        return Math.copySign(magnitude, input) * scale * (precision ? precisionScale : 1);
+    }
+
+    /** Starts the slew limiter from a value, e.g. 0 when the command starts. */
+    public void reset(double value) {
+        last = value;
+        lastTime = Double.NaN;
+    }
+
+    /**
+     * @return magnitude past the deadband rescaled to 0..1 and put through the curve
+     */
+    static double curve(double magnitude, double deadband, double exponent) {
+        if (magnitude <= deadband) {
+            return 0;
+        }
+        double rescaled = Math.min(1, (magnitude - deadband) / (1 - deadband));
+        return exponent == 1 ? rescaled : Math.pow(rescaled, exponent);
+    }
+
+    /**
+     * One step of a slew limiter that speeds up at accelRate and slows down (or reverses) at decelRate.
+     * No limit without a rate (infinite, slew() never called) or without time passing (the first
+     * call), infinity times 0 would be NaN and stick.
+     */
+    static double limit(double last, double target, double dt, double accelRate, double decelRate) {
+        boolean speedingUp = Math.abs(target) > Math.abs(last) && (last == 0 || Math.signum(target) == Math.signum(last));
+        double rate = speedingUp ? accelRate : decelRate;
+        if (Double.isInfinite(rate) || dt <= 0) {
+            return target;
+        }
+        double maxStep = rate * dt;
+        double step = target - last;
+        if (Math.abs(step) <= maxStep) {
+            return target;
+        }
+        return last + Math.copySign(maxStep, step);
+    }
+}
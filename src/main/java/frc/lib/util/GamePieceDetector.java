@@ -0,0 +1,136 @@
+package frc.lib.util;
+
+import edu.wpi.first.math.filter.LinearFilter;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Classifies cone / cube acquisition from the intake rollers' stator current and velocity.
+ * A game piece loads the rollers: current goes up and velocity drops below what the commanded output should give.
+ * Cones are rigid and load the rollers harder than the compliant cubes.
+ * Nothing here allocates, so it is safe to update every loop.
+ */
+public class GamePieceDetector {
+
+    public enum GamePiece { NONE, CONE, CUBE }
+
+    private final double freeSpeed;
+    private final double cubeCurrent;
+    private final double coneCurrent;
+    private final double cubeSpeedRatio;
+    private final double coneSpeedRatio;
+    private final double spinUpTime;
+    private final double debounceTime;
+
+    private final LinearFilter currentFilter;
+    private final LinearFilter speedRatioFilter;
+
+    private double lastOutput = 0;
+    private double spinUpStart = 0;
+    private double lastUnseen = Double.NaN; //debounce runs off the update timestamps so a replayed trace debounces like the robot
+    private double filteredCurrent = 0;
+    private double filteredSpeedRatio = 1;
+    private GamePiece piece = GamePiece.NONE;
+    private boolean hasPiece = false;
+
+    /**
+     * @param freeSpeed Falcon velocity at 100% output with nothing in the intake, counts per 100ms
+     * @param cubeCurrent average stator current (A) above which something is in the rollers
+     * @param coneCurrent average stator current (A) above which it is a cone
+     * @param cubeSpeedRatio measured / expected velocity below which something is in the rollers
+     * @param coneSpeedRatio measured / expected velocity below which it is a cone
+     * @param windowSize moving average length, in loops
+     * @param spinUpTime seconds to ignore after the rollers start (inrush looks like a piece)
+     * @param debounceTime seconds a piece has to be seen before {@link #hasPiece()} goes true
+     */
+    public GamePieceDetector(double freeSpeed, double cubeCurrent, double coneCurrent, double cubeSpeedRatio, double coneSpeedRatio, int windowSize, double spinUpTime, double debounceTime) {
+        this.freeSpeed = freeSpeed;
+        this.cubeCurrent = cubeCurrent;
+        this.coneCurrent = coneCurrent;
+        this.cubeSpeedRatio = cubeSpeedRatio;
+        this.coneSpeedRatio = coneSpeedRatio;
+        this.spinUpTime = spinUpTime;
+        this.debounceTime = debounceTime;
+
+        currentFilter = LinearFilter.movingAverage(windowSize);
+        speedRatioFilter = LinearFilter.movingAverage(windowSize);
+    }
+
+    /**
+     * Call once per loop.
+     * @param output commanded roller output, percent (positive is intaking)
+     */
+    public void update(double output, double upperCurrent, double lowerCurrent, double upperVelocity, double lowerVelocity) {
+        update(output, upperCurrent, lowerCurrent, upperVelocity, lowerVelocity, Timer.getFPGATimestamp());
+    }
+
+    /**
+     * Same as {@link #update(double, double, double, double, double)} with an explicit timestamp, for replaying recorded traces.
+     */
+    public void update(double output, double upperCurrent, double lowerCurrent, double upperVelocity, double lowerVelocity, double timestamp) {
+        if (output <= 0) {
+            //Only classify while intaking, ejecting or stopped clears the piece
+            reset();
+            lastOutput = output;
+            return;
+        }
+        if (lastOutput <= 0) {
+            spinUpStart = timestamp;
+        }
+        lastOutput = output;
+
+        double expectedSpeed = output * freeSpeed;
+        filteredCurrent = currentFilter.calculate(0.5 * (Math.abs(upperCurrent) + Math.abs(lowerCurrent)));
+        filteredSpeedRatio = speedRatioFilter.calculate(0.5 * (Math.abs(upperVelocity) + Math.abs(lowerVelocity)) / expectedSpeed);
+
+        GamePiece seen = GamePiece.NONE;
+        if (timestamp - spinUpStart >= spinUpTime) {
+            if (filteredCurrent >= coneCurrent && filteredSpeedRatio <= coneSpeedRatio) {
+                seen = GamePiece.CONE;
+            } else if (filteredCurrent >= cubeCurrent && filteredSpeedRatio <= cubeSpeedRatio) {
+                seen = GamePiece.CUBE;
+            }
+        }
+
+        if (seen == GamePiece.NONE || Double.isNaN(lastUnseen)) {
+            lastUnseen = timestamp;
+        }
+        hasPiece = seen != GamePiece.NONE && timestamp - lastUnseen >= debounceTime;
+        if (seen != GamePiece.NONE) {
+            //Keep the strongest classification once we have one, a cone can look like a cube while it seats
+            if (piece != GamePiece.CONE) {
+                piece = seen;
+            }
+        } else if (!hasPiece) {
+            piece = GamePiece.NONE;
+        }
+    }
+
+    public void reset() {
+        currentFilter.reset();
+        speedRatioFilter.reset();
+        lastUnseen = Double.NaN;
+        filteredCurrent = 0;
+        filteredSpeedRatio = 1;
+        piece = GamePiece.NONE;
+        hasPiece = false;
+    }
+
+    public boolean hasPiece() {
+        return hasPiece;
+    }
+
+    /**
+     * @return the classified piece, only meaningful while {@link #hasPiece()} is true
+     */
+    public GamePiece getGamePiece() {
+        return hasPiece ? piece : GamePiece.NONE;
+    }
+
+    public double getFilteredCurrent() {
+        return filteredCurrent;
+    }
+
+    public double getFilteredSpeedRatio() {
+        return filteredSpeedRatio;
+    }
+}
@@ -0,0 +1,111 @@
+package frc.lib.util;
+
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.TimedRobot;
+
+/**
+ * Watches how long each robot loop takes and sheds optional work when the loop runs out of headroom,
+ * so drive control keeps its 20ms period instead of overrunning. Load is shed one step at a time in
+ * {@link Load} order and restored in reverse once the loop is comfortably back under budget.
+ * Consumers poll {@link #isShed(Load)}, nothing here reaches into subsystems.
+ */
+public final class LoopBudget {
+    /** Optional work, in the order it gets shed. */
+    public enum Load {
+        /** Info-mode dashboard values */
+        INFO_TELEMETRY,
+        /** Limelight results get parsed every {@link LoopBudget#reducedVisionPeriod} loops instead of every loop */
+        VISION_RATE,
+        /** Mechanism telemetry and other periodic work control doesn't depend on */
+        NON_CRITICAL
+    }
+
+    private static final double period = TimedRobot.kDefaultPeriod;
+    private static final double shedThreshold = 0.8 * period; //p99 above this sheds the next load
+    private static final double restoreThreshold = 0.55 * period; //p99 below this restores the last one
+    private static final int window = 100; //2 seconds of loops
+    private static final int evaluateEvery = 25;
+    private static final int reducedVisionPeriod = 5;
+    private static final int nonCriticalPeriod = 5;
+
+    private static final double[] samples = new double[window];
+    private static final double[] sorted = new double[window];
+    private static int index = 0;
+    private static int count = 0;
+    private static long loop = 0;
+    //Loops to wait after a change so the window only holds loops run at the new level
+    private static int settleLoops = window;
+
+    private static int level = 0; //number of loads shed
+    private static double p99 = 0;
+
+    private LoopBudget() {}
+
+    /**
+     * Call once per loop with how long the loop's work took.
+     */
+    public static void recordLoop(double seconds) {
+        samples[index] = seconds;
+        index = (index + 1) % window;
+        count = Math.min(count + 1, window);
+        loop++;
+        if (settleLoops > 0) {
+            settleLoops--;
+        }
+
+        if (count < window || loop % evaluateEvery != 0) {
+            return;
+        }
+
+        System.arraycopy(samples, 0, sorted, 0, window);
+        Arrays.sort(sorted);
+        p99 = sorted[(int) Math.ceil(0.99 * window) - 1];
+
+        if (settleLoops > 0) {
+            return;
+        }
+        if (p99 > shedThreshold && level < Load.values().length) {
+            setLevel(level + 1);
+        } else if (p99 < restoreThreshold && level > 0) {
+            setLevel(level - 1);
+        }
+    }
+
+    private static void setLevel(int newLevel) {
+        boolean shedding = newLevel > level;
+        Load load = Load.values()[shedding ? level : newLevel];
+        level = newLevel;
+        settleLoops = window;
+        AsyncLog.log((shedding ? "LoopBudget: shed " : "LoopBudget: restored ") + load.name() + ", loop p99 ms: ", p99 * 1000);
+    }
+
+    public static boolean isShed(Load load) {
+        return level > load.ordinal();
+    }
+
+    /**
+     * @return true on the loops vision should parse a new result
+     */
+    public static boolean shouldRunVision() {
+        return !isShed(Load.VISION_RATE) || loop % reducedVisionPeriod == 0;
+    }
+
+    /**
+     * @return true on the loops non-critical periodic work should run
+     */
+    public static boolean shouldRunNonCritical() {
+        return !isShed(Load.NON_CRITICAL) || loop % nonCriticalPeriod == 0;
+    }
+
+    /**
+     * @return 99th percentile loop time over the last window, seconds
+     */
+    public static double getP99() {
+        return p99;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+}
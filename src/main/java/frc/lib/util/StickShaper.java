@@ -0,0 +1,90 @@
+package frc.lib.util;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * {@link AxisShaper} for a two axis stick: the deadband and curve work on the stick's magnitude,
+ * so diagonals aren't cut into a square and the direction the driver pushes is kept. The slew
+ * limit works on the output vector, speeding up at the accel rate and slowing down or turning
+ * at the decel rate. Output is read back with {@link #getX()} and {@link #getY()}, nothing is
+ * allocated per call.
+ */
+public final class StickShaper {
+    private double deadband = 0;
+    private double exponent = 1;
+    private double scale = 1;
+    private double precisionScale = 1;
+    private double accelRate = Double.POSITIVE_INFINITY;
+    private double decelRate = Double.POSITIVE_INFINITY;
+
+    private double x = 0;
+    private double y = 0;
+    private double lastTime = Double.NaN;
+
+    public StickShaper deadband(double deadband) {
+        this.deadband = deadband;
+        return this;
+    }
+
+    public StickShaper exponent(double exponent) {
+        this.exponent = exponent;
+        return this;
+    }
+
+    public StickShaper scale(double scale) {
+        this.scale = scale;
+        return this;
+    }
+
+    public StickShaper precision(double precisionScale) {
+        this.precisionScale = precisionScale;
+        return this;
+    }
+
+    public StickShaper slew(double accelRate, double decelRate) {
+        this.accelRate = accelRate;
+        this.decelRate = decelRate;
+        return this;
+    }
+
+    public void calculate(double inputX, double inputY, boolean precision) {
+        double now = Timer.getFPGATimestamp();
+        double dt = Double.isNaN(lastTime) ? 0 : now - lastTime;
+        lastTime = now;
+
+        //Radial deadband and curve, a full diagonal is clamped to the unit circle
+        double magnitude = Math.hypot(inputX, inputY);
+        double shaped = AxisShaper.curve(magnitude, deadband, exponent) * scale * (precision ? precisionScale : 1);
+        double targetX = magnitude > 1e-9 ? inputX / magnitude * shaped : 0;
+        double targetY = magnitude > 1e-9 ? inputY / magnitude * shaped : 0;
+
+        //Speeding up only if the target is bigger and roughly the same way, turning counts as slowing down
+        double lastMagnitude = Math.hypot(x, y);
+        boolean speedingUp = shaped > lastMagnitude && (lastMagnitude < 1e-9 || targetX * x + targetY * y > 0);
+        double maxStep = (speedingUp ? accelRate : decelRate) * dt;
+        double stepX = targetX - x;
+        double stepY = targetY - y;
+        double step = Math.hypot(stepX, stepY);
+        if (step <= maxStep) {
+            x = targetX;
+            y = targetY;
+        } else {
+            x += stepX / step * maxStep;
+            y += stepY / step * maxStep;
+        }
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public void reset() {
+        x = 0;
+        y = 0;
+        lastTime = Double.NaN;
+    }
+}
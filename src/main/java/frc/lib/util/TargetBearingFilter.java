@@ -0,0 +1,148 @@
+package frc.lib.util;
+
+/**
+ * Kalman filter on the field heading that points the robot at a vision target. Each camera tx is
+ * turned into a field bearing with the robot heading from when the frame was captured (kept in a
+ * short history), so camera latency and the robot turning while the frame was in flight don't
+ * show up as target motion. State is bearing and bearing rate, the rate covers the target sweeping
+ * across as the driver translates.
+ */
+public final class TargetBearingFilter {
+    private static final int historySize = 64; //loops of heading history, over a second at 50Hz
+
+    private final double processNoise; //bearing acceleration spectral density, (rad/s^2)^2 / Hz
+    private final double measurementVariance; //rad^2
+
+    private final double[] historyTime = new double[historySize];
+    private final double[] historyHeading = new double[historySize];
+    private int historyIndex = 0;
+    private int historyCount = 0;
+
+    private boolean initialized = false;
+    private double time;
+    private double bearing;
+    private double rate;
+    private double p00, p01, p11;
+
+    /**
+     * @param measurementStdDev tx noise, radians
+     * @param processStdDev how quickly the bearing rate can change, rad/s^2
+     */
+    public TargetBearingFilter(double measurementStdDev, double processStdDev) {
+        this.measurementVariance = measurementStdDev * measurementStdDev;
+        this.processNoise = processStdDev * processStdDev;
+    }
+
+    /**
+     * Call every loop with the current heading, before {@link #addMeasurement}.
+     */
+    public void recordHeading(double timestamp, double headingRadians) {
+        historyTime[historyIndex] = timestamp;
+        historyHeading[historyIndex] = headingRadians;
+        historyIndex = (historyIndex + 1) % historySize;
+        historyCount = Math.min(historyCount + 1, historySize);
+    }
+
+    /**
+     * Robot heading at a past time, interpolated from the history.
+     * Older than the history gets the oldest heading.
+     */
+    public double headingAt(double timestamp) {
+        if (historyCount == 0) {
+            return 0;
+        }
+        int newest = (historyIndex - 1 + historySize) % historySize;
+        if (timestamp >= historyTime[newest]) {
+            return historyHeading[newest];
+        }
+        int later = newest;
+        for (int i = 1; i < historyCount; i++) {
+            int earlier = (newest - i + historySize) % historySize;
+            if (historyTime[earlier] <= timestamp) {
+                double span = historyTime[later] - historyTime[earlier];
+                double t = span > 0 ? (timestamp - historyTime[earlier]) / span : 0;
+                return historyHeading[earlier] + wrap(historyHeading[later] - historyHeading[earlier]) * t;
+            }
+            later = earlier;
+        }
+        return historyHeading[later];
+    }
+
+    /**
+     * @param captureTime FPGA time the frame was captured
+     * @param txRadians target angle right of the camera's center, like the Limelight's tx
+     */
+    public void addMeasurement(double captureTime, double txRadians, double now) {
+        double measured = wrap(headingAt(captureTime) - txRadians);
+        if (!initialized) {
+            reset(measured, now);
+            return;
+        }
+        predict(now);
+
+        //The measurement is of the bearing back at capture time, H = [1, -latency]
+        double latency = Math.max(0, now - captureTime);
+        double h1 = -latency;
+        double innovation = wrap(measured - (bearing - rate * latency));
+        double s = p00 + 2 * h1 * p01 + h1 * h1 * p11 + measurementVariance;
+        double k0 = (p00 + h1 * p01) / s;
+        double k1 = (p01 + h1 * p11) / s;
+
+        bearing = wrap(bearing + k0 * innovation);
+        rate += k1 * innovation;
+
+        double ph0 = p00 + h1 * p01;
+        double ph1 = p01 + h1 * p11;
+        p00 -= k0 * ph0;
+        p01 -= k0 * ph1;
+        p11 -= k1 * ph1;
+    }
+
+    /** Moves the estimate forward to now with a constant bearing rate. */
+    public void predict(double now) {
+        double dt = now - time;
+        if (!initialized || dt <= 0) {
+            return;
+        }
+        time = now;
+        bearing = wrap(bearing + rate * dt);
+
+        double q = processNoise;
+        p00 += dt * (2 * p01 + dt * p11) + q * dt * dt * dt / 3;
+        p01 += dt * p11 + q * dt * dt / 2;
+        p11 += q * dt;
+    }
+
+    private void reset(double measured, double now) {
+        initialized = true;
+        time = now;
+        bearing = measured;
+        rate = 0;
+        p00 = measurementVariance;
+        p01 = 0;
+        p11 = 1.0; //rad/s, no idea how fast it's moving yet
+    }
+
+    /** Forgets the target, the next measurement starts a new estimate. Heading history is kept. */
+    public void clear() {
+        initialized = false;
+    }
+
+    public boolean hasEstimate() {
+        return initialized;
+    }
+
+    /** Field heading that points at the target, radians, as of the last predict */
+    public double getBearing() {
+        return bearing;
+    }
+
+    /** rad/s */
+    public double getRate() {
+        return rate;
+    }
+
+    private static double wrap(double radians) {
+        return Math.atan2(Math.sin(radians), Math.cos(radians));
+    }
+}
@@ -0,0 +1,71 @@
+package frc.lib.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import com.pathplanner.lib.PathConstraints;
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPoint;
+
+/**
+ * Path generation and loading off the robot loop. Everything runs on one daemon worker and comes
+ * back as a CompletableFuture, cached by name so each path is only ever computed once.
+ * Commands poll {@link CompletableFuture#isDone()} instead of joining, and anything known ahead of
+ * time should be requested at startup so it is ready before the robot is enabled.
+ */
+public final class TrajectoryService {
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "TrajectoryService");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Map<String, CompletableFuture<?>> cache = new ConcurrentHashMap<>();
+
+    private TrajectoryService() {}
+
+    /**
+     * Runs the generator on the worker the first time a key is asked for, later calls get the same
+     * future. A generator that threw is run again on the next request.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> submit(String key, Supplier<T> generator) {
+        CompletableFuture<?> existing = cache.get(key);
+        if (existing != null && existing.isCompletedExceptionally()) {
+            cache.remove(key, existing);
+        }
+        return (CompletableFuture<T>) cache.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            T result = generator.get();
+            AsyncLog.log("TrajectoryService: " + key + " (ms): ", (System.nanoTime() - start) * 1e-6);
+            return result;
+        }, worker));
+    }
+
+    public static CompletableFuture<PathPlannerTrajectory> generate(String name, PathConstraints constraints, PathPoint... points) {
+        List<PathPoint> pointList = List.of(points);
+        return submit("generate/" + name, () -> PathPlanner.generatePath(constraints, pointList));
+    }
+
+    public static CompletableFuture<List<PathPlannerTrajectory>> loadGroup(String name, PathConstraints constraint, PathConstraints... constraints) {
+        return submit("group/" + name, () -> PathPlanner.loadPathGroup(name, constraint, constraints));
+    }
+
+    /**
+     * @return true once every requested path is done (or has failed)
+     */
+    public static boolean isIdle() {
+        for (CompletableFuture<?> future : cache.values()) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,273 @@
+package frc.robot;
+
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.apriltag.AprilTagFieldLayout.OriginPosition;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import frc.lib.util.AsyncLog;
+import frc.robot.Constants.kVision;
+import frc.robot.LimelightHelpers.LimelightTarget_Fiducial;
+
+/**
+ * Robot pose from the AprilTags' camera space transforms, solved on the RIO instead of taking the
+ * Limelight's botpose. Every tag gives its own robot pose from the cached field layout, tags that
+ * look ambiguous are dropped before the weighted average, and tags that disagree with the average
+ * are dropped after it.
+ * <ul>
+ * <li>ambiguous: too far, seen too edge on, or a heading that says the solve flipped</li>
+ * <li>weight: 1 / distance squared, times how square on the tag is seen</li>
+ * </ul>
+ * Poses are in the alliance origin, like odometry and the mirrored paths: on red the layout's
+ * origin is moved to the red wall and the tag arrays are flattened again. Feed it one tag at a time
+ * between {@link #begin(double, Alliance)} and {@link #solve()}. Nothing is allocated after
+ * construction except when the alliance changes, one solver per thread.
+ */
+public final class AprilTagPoseSolver {
+    private static final int maxTags = 16;
+
+    /** Field layout in one alliance's origin, flattened to arrays by tag ID */
+    private static final class Tags {
+        final Alliance alliance;
+        final double[] x;
+        final double[] y;
+        final double[] yaw;
+
+        Tags(Alliance alliance, double[] x, double[] y, double[] yaw) {
+            this.alliance = alliance;
+            this.x = x;
+            this.y = y;
+            this.yaw = yaw;
+        }
+    }
+
+    //Loaded once for every solver, flattened again when the alliance changes
+    private static AprilTagFieldLayout layout;
+    private static volatile Tags sharedTags;
+
+    //Camera mounting on the robot
+    private final double cameraX;
+    private final double cameraY;
+    private final double pitchSin;
+    private final double pitchCos;
+    private final double cameraYaw;
+
+    //Candidates for the current solve
+    private final double[] candidateX = new double[maxTags];
+    private final double[] candidateY = new double[maxTags];
+    private final double[] candidateHeading = new double[maxTags];
+    private final double[] candidateWeight = new double[maxTags];
+    private final double[] candidateDistance = new double[maxTags];
+    private int candidates = 0;
+    private double gyroHeading = 0;
+    private Tags tags;
+
+    /* Result of the last solve() */
+    private double x;
+    private double y;
+    private double heading;
+    private int tagCount;
+    private double averageDistance;
+
+    /**
+     * @param camera index into the {@link kVision} camera arrays
+     */
+    public AprilTagPoseSolver(int camera) {
+        tags = loadTags(Alliance.Blue);
+        cameraX = kVision.cameraForward[camera];
+        cameraY = kVision.cameraLeft[camera];
+        pitchSin = Math.sin(Math.toRadians(kVision.cameraPitch[camera]));
+        pitchCos = Math.cos(Math.toRadians(kVision.cameraPitch[camera]));
+        cameraYaw = Math.toRadians(kVision.cameraYaw[camera]);
+    }
+
+    private static Tags loadTags(Alliance alliance) {
+        Tags current = sharedTags;
+        if (current != null && current.alliance == alliance) {
+            return current;
+        }
+        return flattenTags(alliance);
+    }
+
+    private static synchronized Tags flattenTags(Alliance alliance) {
+        if (sharedTags != null && sharedTags.alliance == alliance) {
+            return sharedTags;
+        }
+        if (layout == null) {
+            try {
+                layout = AprilTagFields.k2023ChargedUp.loadAprilTagLayoutField();
+            } catch (UncheckedIOException e) {
+                AsyncLog.log("AprilTagPoseSolver: couldn't load the field layout, " + e.getMessage());
+                layout = new AprilTagFieldLayout(List.of(), 0, 0); //no tags, every addTag() is dropped
+            }
+        }
+
+        //getTags() is always blue origin, getTagPose() applies the origin
+        layout.setOrigin(alliance == Alliance.Red
+            ? OriginPosition.kRedAllianceWallRightSide
+            : OriginPosition.kBlueAllianceWallRightSide);
+        int maxId = 0;
+        for (AprilTag tag : layout.getTags()) {
+            maxId = Math.max(maxId, tag.ID);
+        }
+        double[] xs = new double[maxId + 1];
+        double[] ys = new double[maxId + 1];
+        double[] yaws = new double[maxId + 1];
+        Arrays.fill(xs, Double.NaN);
+        for (AprilTag tag : layout.getTags()) {
+            Pose3d pose = layout.getTagPose(tag.ID).orElseThrow();
+            xs[tag.ID] = pose.getX();
+            ys[tag.ID] = pose.getY();
+            yaws[tag.ID] = pose.getRotation().getZ();
+        }
+        sharedTags = new Tags(alliance, xs, ys, yaws);
+        AsyncLog.log("AprilTagPoseSolver: tags flattened for " + alliance);
+        return sharedTags;
+    }
+
+    /**
+     * Starts a new solve.
+     * @param gyroHeadingRadians robot heading when the frame was captured, flipped tags are checked against it
+     * @param alliance origin of the solved pose, Invalid is treated as blue
+     */
+    public void begin(double gyroHeadingRadians, Alliance alliance) {
+        candidates = 0;
+        gyroHeading = gyroHeadingRadians;
+        Alliance origin = alliance == Alliance.Red ? Alliance.Red : Alliance.Blue;
+        if (origin != tags.alliance) {
+            tags = loadTags(origin);
+        }
+    }
+
+    /**
+     * Adds a tag if it's in the layout and doesn't look ambiguous.
+     * @return true if it was kept
+     */
+    public boolean addTag(LimelightTarget_Fiducial tag) {
+        return addTag((int) tag.fiducialID, tag.getTargetPose_CameraSpaceArray());
+    }
+
+    /**
+     * @param cameraSpace Limelight camera space [x right, y down, z out of the lens, roll, pitch, yaw (degrees)]
+     */
+    public boolean addTag(int id, double[] cameraSpace) {
+        double[] tagX = tags.x;
+        if (candidates == maxTags || id < 0 || id >= tagX.length || Double.isNaN(tagX[id]) || cameraSpace.length < 6) {
+            return false;
+        }
+
+        //Limelight camera space to WPILib's x forward, y left, z up, then pitch and yaw onto the robot
+        double forward = cameraSpace[2];
+        double left = -cameraSpace[0];
+        double up = -cameraSpace[1];
+        double level = forward * pitchCos - up * pitchSin;
+        double yawSin = Math.sin(cameraYaw);
+        double yawCos = Math.cos(cameraYaw);
+        double robotX = cameraX + level * yawCos - left * yawSin;
+        double robotY = cameraY + level * yawSin + left * yawCos;
+        double distance = Math.hypot(robotX - cameraX, robotY - cameraY);
+
+        //Facing the camera square on is yaw 0 in camera space, its face points back at us (PI in WPILib)
+        double tagYawOnRobot = Math.PI - Math.toRadians(cameraSpace[4]) + cameraYaw;
+        double viewAngle = Math.abs(wrap(tagYawOnRobot - Math.atan2(robotY - cameraY, robotX - cameraX) - Math.PI));
+        double robotHeading = wrap(tags.yaw[id] - tagYawOnRobot);
+
+        if (distance > kVision.maxTagDistance
+            || viewAngle > Math.toRadians(kVision.maxViewAngle)
+            || Math.abs(wrap(robotHeading - gyroHeading)) > Math.toRadians(kVision.maxTagHeadingError)) {
+            return false;
+        }
+
+        //Tag on the field minus the tag's offset from the robot, turned by the robot heading
+        double headingSin = Math.sin(gyroHeading);
+        double headingCos = Math.cos(gyroHeading);
+        candidateX[candidates] = tagX[id] - (robotX * headingCos - robotY * headingSin);
+        candidateY[candidates] = tags.y[id] - (robotX * headingSin + robotY * headingCos);
+        candidateHeading[candidates] = robotHeading;
+        candidateDistance[candidates] = distance;
+        candidateWeight[candidates] = Math.cos(viewAngle) / Math.max(distance * distance, 0.25);
+        candidates++;
+        return true;
+    }
+
+    /**
+     * Weighted average of the kept tags, then again without any tag farther than
+     * {@link kVision#tagOutlierDistance} from it.
+     * @return false if no tags are left
+     */
+    public boolean solve() {
+        if (!average(Double.NaN, Double.NaN)) {
+            return false;
+        }
+        if (candidates > 1) {
+            return average(x, y);
+        }
+        return true;
+    }
+
+    private boolean average(double centerX, double centerY) {
+        double weightSum = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumSin = 0;
+        double sumCos = 0;
+        double sumDistance = 0;
+        int count = 0;
+        for (int i = 0; i < candidates; i++) {
+            if (!Double.isNaN(centerX)
+                && Math.hypot(candidateX[i] - centerX, candidateY[i] - centerY) > kVision.tagOutlierDistance) {
+                continue;
+            }
+            double weight = candidateWeight[i];
+            weightSum += weight;
+            sumX += candidateX[i] * weight;
+            sumY += candidateY[i] * weight;
+            sumSin += Math.sin(candidateHeading[i]) * weight;
+            sumCos += Math.cos(candidateHeading[i]) * weight;
+            sumDistance += candidateDistance[i];
+            count++;
+        }
+        if (count == 0 || weightSum <= 0) {
+            tagCount = 0;
+            return false;
+        }
+        x = sumX / weightSum;
+        y = sumY / weightSum;
+        heading = Math.atan2(sumSin, sumCos);
+        tagCount = count;
+        averageDistance = sumDistance / count;
+        return true;
+    }
+
+    private static double wrap(double radians) {
+        return Math.atan2(Math.sin(radians), Math.cos(radians));
+    }
+
+    /** Alliance origin, meters */
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    /** Radians, from the tags alone */
+    public double getHeading() {
+        return heading;
+    }
+
+    /** Tags used in the last solve, after filtering */
+    public int getTagCount() {
+        return tagCount;
+    }
+
+    public double getAverageDistance() {
+        return averageDistance;
+    }
+}
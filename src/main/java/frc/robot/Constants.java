@@ -1,8 +1,9 @@
 package frc.robot;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.ctre.phoenix.motorcontrol.NeutralMode;
 import com.pathplanner.lib.PathConstraints;
-import com.pathplanner.lib.PathPlanner;
 import com.pathplanner.lib.PathPlannerTrajectory;
 import com.pathplanner.lib.PathPoint;
 
@@ -15,6 +16,7 @@ import edu.wpi.first.wpilibj.DoubleSolenoid;
 import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
 import frc.lib.util.COTSFalconSwerveConstants;
 import frc.lib.util.SwerveModuleConstants;
+import frc.lib.util.TrajectoryService;
 
 public final class Constants {
     public static final double stickDeadband = 0.1;
@@ -90,6 +92,12 @@ public final class Constants {
         /** Radians per Second */
         public static final double maxAngularVelocity = 10.0; //TODO: This must be tuned to specific robot
 
+        /* Robot, for path timing and sim */
+        public static final double robotMassKg = 55.0; //with bumpers and battery
+        public static final double wheelCoefficientOfFriction = 1.0;
+        public static final double maxCentripetalAccel = 3.0; //m/s^2, keeps game pieces in the intake through turns
+        public static final double emptyCentripetalAccel = 6.0; //m/s^2, for paths with nothing in the intake, under traction (friction * g)
+
         /* Neutral Modes */
         public static final NeutralMode angleNeutralMode = NeutralMode.Coast;
         public static final NeutralMode driveNeutralMode = NeutralMode.Brake;
@@ -145,6 +153,16 @@ public final class Constants {
         public static final double kPXController = 1.75;
         public static final double kPYController = 1.5;
         public static final double kPThetaController = 4;
+
+        //Seconds ahead the auto follower aims its velocity, roughly how long the modules take to respond
+        public static final double kFeedForwardLookahead = 0.1;
+
+        /* Stop events that overlap driving, see FeedForwardSwerveAutoBuilder */
+        public static final double kScoreLeadSeconds = 0.6; //arm starts rising this long before the robot reaches the grid
+        public static final double kScoreLeadMaxSpeed = 1.0; //m/s, not while still carrying speed into the grid
+        public static final double kIntakeLeadMeters = 0.5;
+        public static final double kIntakeLeadMaxSpeed = 1.5; //m/s
+        public static final double kRestDriveAwayLengthCm = 10.0; //telescope in past this before driving away from a node
     
         /* Constraint for the motion profilied robot angle controller */
         public static final TrapezoidProfile.Constraints kThetaControllerConstraints =
@@ -152,39 +170,40 @@ public final class Constants {
                 kMaxAngularSpeedRadiansPerSecond, kMaxAngularSpeedRadiansPerSecondSquared);
     }
 
+    //Generated on the TrajectoryService worker when this class loads, done long before enable
     public static final class PathPlannerSimpleTrajectories{
 
-       public static final  PathPlannerTrajectory advanceNorth_22inches = PathPlanner.generatePath(
+       public static final CompletableFuture<PathPlannerTrajectory> advanceNorth_22inches = TrajectoryService.generate("advanceNorth_22inches",
             new PathConstraints(3, 2), 
             new PathPoint(new Translation2d(0, 0.0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)), // position, heading(direction of travel), holonomic rotation
             new PathPoint(new Translation2d(0.0, 0.5588), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)) // position, heading(direction of travel), holonomic rotation
         );
 
-        public static final PathPlannerTrajectory advanceSouth_22inches = PathPlanner.generatePath(
+        public static final CompletableFuture<PathPlannerTrajectory> advanceSouth_22inches = TrajectoryService.generate("advanceSouth_22inches",
             new PathConstraints(3, 2), 
             new PathPoint(new Translation2d(0, 0.0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)), // position, heading(direction of travel), holonomic rotation
             new PathPoint(new Translation2d(0.0, -0.5588), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)) // position, heading(direction of travel), holonomic rotation
         );
 
-        public static final  PathPlannerTrajectory two_Meter_East = PathPlanner.generatePath(
+        public static final CompletableFuture<PathPlannerTrajectory> two_Meter_East = TrajectoryService.generate("two_Meter_East",
             new PathConstraints(3, 3), 
             new PathPoint(new Translation2d(0, 0.0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)), // position, heading(direction of travel), holonomic rotation
             new PathPoint(new Translation2d(2.0, 0.0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)) // position, heading(direction of travel), holonomic rotation
         );
 
-        public static final  PathPlannerTrajectory two_Meter_South = PathPlanner.generatePath(
+        public static final CompletableFuture<PathPlannerTrajectory> two_Meter_South = TrajectoryService.generate("two_Meter_South",
             new PathConstraints(3, 3), 
             new PathPoint(new Translation2d(0, 0.0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)), // position, heading(direction of travel), holonomic rotation
             new PathPoint(new Translation2d(0.0, -2.0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)) // position, heading(direction of travel), holonomic rotation
         ); 
 
-        public static final  PathPlannerTrajectory Left_90 = PathPlanner.generatePath(
+        public static final CompletableFuture<PathPlannerTrajectory> Left_90 = TrajectoryService.generate("Left_90",
             new PathConstraints(3, 2), 
             new PathPoint(new Translation2d(0, 0.0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)), // position, heading(direction of travel), holonomic rotation
             new PathPoint(new Translation2d(0.0, 0.0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(90)) // position, heading(direction of travel), holonomic rotation
         );
 
-        public static final  PathPlannerTrajectory Left_180 = PathPlanner.generatePath(
+        public static final CompletableFuture<PathPlannerTrajectory> Left_180 = TrajectoryService.generate("Left_180",
             new PathConstraints(3, 2), 
             new PathPoint(new Translation2d(0, 0.0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)), // position, heading(direction of travel), holonomic rotation
             new PathPoint(new Translation2d(0.0, 0.0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(180)) // position, heading(direction of travel), holonomic rotation
@@ -206,9 +225,40 @@ public final class Constants {
 
         public static final Value RETRACTED = Value.kReverse;
         public static final Value EXTENDED = Value.kForward;
+
+        //Game piece detection from roller current / velocity, see GamePieceDetector
+        public static final double rollerFreeSpeed = 21777; //counts per 100ms at 100%
+        public static final double cubeCurrent = 18; //FIXME tune from logged intakes
+        public static final double coneCurrent = 30; //FIXME
+        public static final double cubeSpeedRatio = 0.6;
+        public static final double coneSpeedRatio = 0.35;
+        public static final int detectionWindow = 5; //loops
+        public static final double spinUpTime = 0.3;
+        public static final double detectionDebounce = 0.06; //3 loops
+        public static final double holdOutput = 0.15; //rollers keep squeezing a held piece so the detector still sees it //FIXME
+        public static final double pieceLostTime = 0.2; //seconds the piece has to be gone before teleop intakes again
         
     }
 
+    public static abstract class kWrist{
+
+        //Replaces the old RIO-side check of getSupplyCurrent() <= 40 before every write
+        public static final double supplyCurrentLimit = 40;
+        public static final double supplyCurrentThreshold = 40;
+        public static final double supplyCurrentThresholdTime = 0.0;
+
+        //Gravity feed-forward, in volts (-0.6 / 12 is the -0.05 the old hold loop added every cycle)
+        public static final double kG = -0.6;
+        public static final double countsPerDegree = 30000.0 / 90.0; //FIXME (from the old sin() hold experiment)
+        public static final double horizontalOffsetDegrees = 0.0; //FIXME wrist angle from horizontal at the limit switch
+
+        /* Simulation */
+        public static final double gearRatio = countsPerDegree * 360.0 / 2048.0;
+        public static final double lengthMeters = 0.35; //FIXME
+        public static final double massKg = 3.0; //FIXME
+
+    }
+
     public static abstract class kTelescope{
 
         public static final int leader = 12; //FIXME
@@ -221,8 +271,23 @@ public final class Constants {
         public static final double kGearCircumference = Math.PI * 4.0; //CM //FIXME
         public static final double telescopeLength = 45; //CM //FIXME
         public static final double encoderLimit = (telescopeLength / kGearCircumference) * 4096 * kGearReduction;
-
-
+        public static final double countsPerCm = encoderLimit / telescopeLength;
+
+        /* Motion Magic (counts per 100ms) */
+        public static final double kP = 0.014978 * 5.2;
+        public static final double kF = 1023.0 / 21777.0; //FIXME 100% output over Falcon free speed, tune in Tuner
+        public static final double cruiseVelocity = 18000; //~85% of free speed, retracting used to run at -1
+        public static final double acceleration = 36000;
+        public static final int sCurveStrength = 1;
+
+        /* Retract / Homing */
+        public static final double slowZoneCm = 4.0; //profile stops this far out, then creeps onto the switch
+        public static final double retractCreepPercent = -0.2;
+        public static final double homingStallVelocity = 150; //counts per 100ms
+        public static final double homingStallTime = 0.15; //seconds stalled before we call it home
+
+        /* Simulation */
+        public static final double carriageMassKg = 4.0; //FIXME
         
     }
 
@@ -231,6 +296,37 @@ public final class Constants {
         public static final int LowerArm = 4;
         public static final int UpperArm = 5;
 
+        //CANCoder reads "fakeDeg", 2.4 of them per real degree (see ArmToAnglePID)
+        public static final double fakeDegreesPerDegree = 2.4;
+
+        public static final double settleVelocity = 10; //fakeDeg/s, the arm has to be slower than this before it's locked //FIXME
+
+        /* Simulation */
+        public static final double gearRatio = 200.0; //FIXME
+        public static final double lengthMeters = 0.9; //FIXME
+        public static final double massKg = 8.0; //FIXME
+        public static final double maxAngleDegrees = 300 / fakeDegreesPerDegree; //ArmPercentCommand stops at 300 fakeDeg
+
+    }
+
+    public static abstract class kPneumatics{
+
+        public static final int hubID = 50; //REV PH
+        public static final int pressureSensorChannel = 0; //REV analog pressure sensor on the PH
+
+        /* Compressor, psi. Tops up while drive is quiet, waits out heavy drive load unless the tanks are low. */
+        public static final double maxPressure = 120;
+        public static final double topUpPressure = 110; //starts below this while drive is quiet
+        public static final double deferFloor = 80; //below this it runs no matter what drive is doing
+        public static final double deferCurrent = 120; //amps drawn by the drive and steer Talons (CurrentBudget) that counts as heavy load
+        public static final double deferVoltage = 10.5; //battery volts that count as heavy load
+        public static final double resumeDelay = 0.5; //seconds of quiet before the compressor comes back
+
+        /* Actuation prediction, cylinders run off the regulator */
+        public static final double workingPressure = 60; //psi after the regulator //FIXME
+        public static final double actuationTime = 0.08; //seconds for a full stroke at working pressure //FIXME
+        public static final double maxActuationTime = 0.5; //seconds, nearly empty tanks
+
     }
 
     public static abstract class kLock{
@@ -239,6 +335,174 @@ public final class Constants {
         public static final int open = 3;
 
     }
+
+    public static abstract class kGrid{
+
+        //Blue alliance field coordinates, meters. Red is mirrored the same way PathPlanner mirrors paths.
+        public static final double fieldWidth = 8.02;
+        public static final double scoringX = 1.85; //robot center against the grid
+        public static final double[] nodeY = {0.51, 1.07, 1.63, 2.19, 2.75, 3.31, 3.86, 4.42, 4.98}; //cable side to substation side
+        public static final Rotation2d scoringRotation = Rotation2d.fromDegrees(180);
+
+        //Charge station footprint, paths that would cross it go around through a lane
+        public static final double stationMinX = 2.9;
+        public static final double stationMaxX = 4.85;
+        public static final double stationMinY = 1.5;
+        public static final double stationMaxY = 3.98;
+        public static final double cableLaneY = 0.75;
+        public static final double substationLaneY = 4.7;
+
+        /* On the fly paths */
+        public static final PathConstraints constraints = new PathConstraints(2.5, 2.0);
+        public static final double cellSize = 0.3; //start poses in the same cell share a cached path
+        public static final double headingBucket = 45.0; //degrees
+        public static final double communityMaxX = 5.5;
+
+    }
+
+    public static abstract class kBalance{
+
+        public static final double climbSpeed = 0.12; //fraction of max speed while the platform is still on its stop
+        //Roll rate (deg/s) towards level that means the station has started to tip
+        public static final double tipRate = 12.0;
+
+        /* Holding, ChargeStationModel places the gains */
+        public static final double closedLoopPole = 3.0; //rad/s, all three poles
+        public static final double pivotGain = 0.1; //m/s per radian, how fast the pivot estimate creeps towards level
+        public static final double maxHoldSpeed = 0.8; //m/s
+
+        public static final double levelTolerance = 2.5; //degrees
+        public static final double levelRate = 4.0; //deg/s
+        public static final double settleTime = 0.5;
+
+        /* Charge station seesaw along field x (ChargeStationModel), center is the blue side for the simulation */
+        public static final double stationCenterX = 3.88; //meters
+        public static final double stationHalfLength = 1.22; //pivot to end of the ramp
+        public static final double stationMaxAngle = 15.0; //degrees
+        public static final double stationInertia = 45.0; //kg m^2 about the pivot
+        public static final double stationDamping = 60.0; //N m s / rad
+        public static final double stationCentering = 25.0; //N m / rad
+
+    }
+
+    public static abstract class kVision{
+
+        //One entry per Limelight, by NT table name
+        public static final String[] cameras = {"limelight"};
+        public static final int[] pipelines = {0}; //AprilTag pipeline on each camera
+
+        public static final int reducedRatePeriod = 5; //frames, only every Nth frame gets parsed while the loop is shedding vision
+
+        /* Pose estimator trust, std devs at 1 m from a single tag. Scaled by distance squared and tag count. */
+        public static final double xyStdDev = 0.3; //meters
+        public static final double thetaStdDev = 10.0; //degrees
+        public static final double maxTagDistance = 4.5; //meters, farther single tag poses are dropped
+        public static final double maxPoseJump = 1.5; //meters from odometry, dropped as a bad solve
+        public static final boolean recordFrames = true; //json and poses to the data log, for VisionReplay
+
+        /* On-RIO tag solve (AprilTagPoseSolver) instead of the Limelight's botpose */
+        public static final boolean useRioSolver = false;
+        //Lens position from the robot center, one entry per camera
+        public static final double[] cameraForward = {0.25}; //meters //FIXME measure
+        public static final double[] cameraLeft = {0.0};
+        public static final double[] cameraPitch = {0.0}; //degrees, tilted up
+        public static final double[] cameraYaw = {0.0}; //degrees, CCW from robot forward
+        public static final double maxViewAngle = 60.0; //degrees off square, more edge on is too ambiguous
+        public static final double maxTagHeadingError = 15.0; //degrees between a tag's heading and the gyro, more means the solve flipped
+        public static final double tagOutlierDistance = 0.5; //meters from the weighted pose
+
+    }
+
+    public static abstract class kAim{
+
+        /* Profiled heading controller, radians in, rad/s out */
+        public static final double kP = 4.0;
+        public static final double kD = 0.15;
+        public static final double maxAngularVelocity = kSwerve.maxAngularVelocity * 0.8;
+        public static final double maxAngularAccel = 4 * Math.PI; //rad/s^2
+
+        /* tx filter */
+        public static final double txStdDev = Math.toRadians(1.0);
+        public static final double bearingProcessStdDev = 2.0; //rad/s^2
+        public static final double targetLostTime = 0.5; //seconds without a frame before the target is dropped
+
+        public static final double settleTolerance = 1.5; //degrees, for AimAssistBenchmark
+
+    }
+
+    public static abstract class kInput{
+
+        /* Driver translation stick, radial. Slew rates are fractions of full stick per second. */
+        public static final double translationDeadband = stickDeadband;
+        public static final double translationExponent = 2.0;
+        public static final double translationAccel = 3.0; //0 to full in a third of a second
+        public static final double translationDecel = 6.0; //letting go stops twice as fast
+        public static final double translationPrecision = 0.35; //scale while precision mode is held
+
+        /* Driver rotation stick */
+        public static final double rotationDeadband = stickDeadband;
+        public static final double rotationExponent = 2.0;
+        public static final double rotationAccel = 6.0;
+        public static final double rotationDecel = 10.0;
+        public static final double rotationPrecision = 0.4;
+
+        /* Manipulator sticks, same squared curves they always had */
+        public static final double telescopeExponent = 2.0;
+        public static final double telescopeScale = 1.0;
+        public static final double armExponent = 2.0;
+        public static final double armScale = 0.75;
+
+    }
+
+    public static abstract class kTipping{
+
+        /* CoG model, robot frame: x forward from the robot center, heights from the floor */
+        public static final double chassisMassKg = 45.0; //frame, battery, bumpers, everything but the arm //FIXME
+        public static final double chassisCogHeight = 0.12; //meters //FIXME
+        public static final double pivotX = -0.20; //meters, arm pivot behind center, the arm swings out over the front //FIXME
+        public static final double pivotHeight = 0.95; //meters //FIXME
+        public static final double armCogFraction = 0.5; //of kArm.lengthMeters from the pivot, arm tube and motors
+
+        /* Support polygon, wheel contact patches */
+        public static final double supportHalfLength = kSwerve.wheelBase / 2.0;
+        public static final double supportHalfWidth = kSwerve.trackWidth / 2.0;
+
+        public static final double safetyFactor = 0.7; //fraction of the tipping acceleration drive is allowed to use
+        public static final double tractionLimit = 9.0; //m/s^2, envelopes above this don't limit anything, the wheels slip first
+
+    }
+
+    public static abstract class kPower{
+
+        /* Budget, from battery voltage. Sagging drops it from every group's max towards every group's min. */
+        public static final double fullBudgetVoltage = 10.5; //volts, at or above this nothing is cut
+        public static final double floorVoltage = 7.5; //volts, everything at its min, the RIO browns out at 6.8
+        public static final double voltageRecovery = 0.05; //per loop, the budget cuts on the first sagging loop and comes back slowly
+
+        public static final double demandHeadroom = 1.5; //a group's draw times this is what it gets before anyone gets their max
+        public static final double pushThreshold = 5.0; //amps, smaller moves in a motor's limit aren't sent over CAN
+
+        //When the arm is past this, the superstructure gets the budget first
+        public static final double scoringArmAngle = 216; //fakeDeg, horizontal
+        //Tilt that means we're climbing the charge station, drive gets the budget first
+        public static final double climbTilt = 6.0; //degrees
+
+        /* Per motor supply limits: continuous max, peak (trigger) and the floor the manager won't go under */
+        public static final double steerMinLimit = 15;
+        public static final double driveMinLimit = 20;
+        public static final double armMaxLimit = 40; //FIXME
+        public static final double armPeakLimit = 60;
+        public static final double armMinLimit = 20;
+        public static final double telescopeMaxLimit = 40; //FIXME
+        public static final double telescopePeakLimit = 60;
+        public static final double telescopeMinLimit = 15;
+        public static final double wristMinLimit = 10;
+        public static final double intakeMaxLimit = 30; //FIXME
+        public static final double intakePeakLimit = 40;
+        public static final double intakeMinLimit = 10;
+        public static final double peakDuration = 0.1; //seconds
+
+    }
     
 
     
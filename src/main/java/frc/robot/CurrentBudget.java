@@ -0,0 +1,237 @@
+package frc.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.ctre.phoenix.motorcontrol.SupplyCurrentLimitConfiguration;
+import com.ctre.phoenix.motorcontrol.can.BaseTalon;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringPublisher;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.lib.util.AsyncLog;
+import frc.lib.util.LoopBudget;
+import frc.robot.Constants.kPower;
+import frc.robot.Constants.kSwerve;
+import frc.robot.Constants.kWrist;
+
+/**
+ * Shares the battery between every Talon on the robot so a sagging battery cuts the least important
+ * motors instead of browning out the RIO. Motors register with their {@link Group} when their
+ * subsystem is built, {@link #update()} runs once a loop after the scheduler:
+ * <ol>
+ * <li>The budget is every group's max supply limit at a healthy voltage, sliding down to every
+ * group's min at {@link kPower#floorVoltage}. It drops on the first sagging loop and recovers slowly.</li>
+ * <li>Every group gets its min, then in the {@link Mode}'s priority order each group gets what it's
+ * drawing now (with {@link kPower#demandHeadroom}), then its max, until the budget runs out.</li>
+ * <li>A motor's new limit is only sent when it moved by more than {@link kPower#pushThreshold},
+ * with a zero timeout so the loop never waits on CAN.</li>
+ * </ol>
+ * With a healthy battery every motor sits at the limits it had before, the static ones in CTREConfigs
+ * and Wrist included.
+ */
+public final class CurrentBudget {
+    /** Motors that share a limit, per motor amps. */
+    public enum Group {
+        STEER(kSwerve.angleContinuousCurrentLimit, kSwerve.anglePeakCurrentLimit, kSwerve.anglePeakCurrentDuration, kPower.steerMinLimit),
+        DRIVE(kSwerve.driveContinuousCurrentLimit, kSwerve.drivePeakCurrentLimit, kSwerve.drivePeakCurrentDuration, kPower.driveMinLimit),
+        ARM(kPower.armMaxLimit, kPower.armPeakLimit, kPower.peakDuration, kPower.armMinLimit),
+        TELESCOPE(kPower.telescopeMaxLimit, kPower.telescopePeakLimit, kPower.peakDuration, kPower.telescopeMinLimit),
+        WRIST(kWrist.supplyCurrentLimit, kWrist.supplyCurrentThreshold, kWrist.supplyCurrentThresholdTime, kPower.wristMinLimit),
+        INTAKE(kPower.intakeMaxLimit, kPower.intakePeakLimit, kPower.peakDuration, kPower.intakeMinLimit);
+
+        final double maxLimit;
+        final double peakLimit;
+        final double peakDuration;
+        final double minLimit;
+
+        Group(double maxLimit, double peakLimit, double peakDuration, double minLimit) {
+            this.maxLimit = maxLimit;
+            this.peakLimit = peakLimit;
+            this.peakDuration = peakDuration;
+            this.minLimit = minLimit;
+        }
+    }
+
+    /** Who gets the budget first. */
+    public enum Mode {
+        DRIVE(Group.STEER, Group.DRIVE, Group.INTAKE, Group.ARM, Group.WRIST, Group.TELESCOPE),
+        /** Climbing or balancing on the charge station */
+        BALANCE(Group.STEER, Group.DRIVE, Group.ARM, Group.WRIST, Group.TELESCOPE, Group.INTAKE),
+        /** Superstructure out at a node */
+        SCORING(Group.STEER, Group.ARM, Group.TELESCOPE, Group.WRIST, Group.INTAKE, Group.DRIVE);
+
+        final Group[] priority;
+
+        Mode(Group... priority) {
+            this.priority = priority;
+        }
+    }
+
+    private static final Group[] groups = Group.values();
+    private static final List<List<BaseTalon>> motors = new ArrayList<>();
+    private static final SupplyCurrentLimitConfiguration[] configs = new SupplyCurrentLimitConfiguration[groups.length];
+    private static final double[] allocation = new double[groups.length]; //amps for the whole group
+    private static final double[] demand = new double[groups.length];
+    private static final double[] pushed = new double[groups.length]; //per motor limit last sent
+    private static final double[] drawn = new double[groups.length];
+
+    static {
+        for (Group group : groups) {
+            motors.add(new ArrayList<>());
+            configs[group.ordinal()] = new SupplyCurrentLimitConfiguration(true, group.maxLimit, group.peakLimit, group.peakDuration);
+            pushed[group.ordinal()] = group.maxLimit;
+        }
+    }
+
+    private static Supplier<Mode> modeSupplier = () -> Mode.DRIVE;
+    private static Mode mode = Mode.DRIVE;
+    private static double voltage = 12.0;
+    private static double budget = 0;
+    private static double drawnTotal = 0;
+
+    private static final NetworkTable table = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+    private static final DoublePublisher budgetPub = table.getDoubleTopic("Power: Budget").publish();
+    private static final DoublePublisher drawnPub = table.getDoubleTopic("Power: Drawn").publish();
+    private static final StringPublisher modePub = table.getStringTopic("Power: Mode").publish();
+
+    private CurrentBudget() {}
+
+    /**
+     * Adds a motor to a group and sets it to the group's max limit. Call from the subsystem's constructor,
+     * after any configFactoryDefault / configAllSettings.
+     */
+    public static void register(Group group, BaseTalon motor) {
+        motors.get(group.ordinal()).add(motor);
+        SupplyCurrentLimitConfiguration config = configs[group.ordinal()];
+        setLimit(config, group, pushed[group.ordinal()]);
+        motor.configSupplyCurrentLimit(config);
+    }
+
+    /** Picks the priority order each loop, set once by RobotContainer. */
+    public static void setModeSupplier(Supplier<Mode> modeSupplier) {
+        CurrentBudget.modeSupplier = modeSupplier;
+    }
+
+    public static void update() {
+        Mode newMode = modeSupplier.get();
+        if (newMode != mode) {
+            mode = newMode;
+            AsyncLog.log("CurrentBudget: " + mode.name() + " first, battery volts: ", voltage);
+        }
+
+        //Cut on the first sagging loop, recover slowly so a limit doesn't flap with the load it's limiting
+        double measured = RobotController.getBatteryVoltage();
+        voltage = measured < voltage ? measured : voltage + (measured - voltage) * kPower.voltageRecovery;
+
+        double minTotal = 0;
+        double maxTotal = 0;
+        drawnTotal = 0;
+        for (Group group : groups) {
+            int i = group.ordinal();
+            List<BaseTalon> groupMotors = motors.get(i);
+            int count = groupMotors.size();
+            drawn[i] = 0;
+            for (int m = 0; m < count; m++) {
+                drawn[i] += Math.abs(groupMotors.get(m).getSupplyCurrent());
+            }
+            demand[i] = Math.max(group.minLimit * count, Math.min(group.maxLimit * count, drawn[i] * kPower.demandHeadroom));
+            allocation[i] = group.minLimit * count;
+            minTotal += group.minLimit * count;
+            maxTotal += group.maxLimit * count;
+            drawnTotal += drawn[i];
+        }
+
+        double health = (voltage - kPower.floorVoltage) / (kPower.fullBudgetVoltage - kPower.floorVoltage);
+        budget = minTotal + (maxTotal - minTotal) * Math.max(0, Math.min(1, health));
+
+        //Mins are already handed out, then what each group is using, then what each group could use
+        double remaining = budget - minTotal;
+        for (Group group : mode.priority) {
+            remaining = give(group.ordinal(), demand[group.ordinal()], remaining);
+        }
+        for (Group group : mode.priority) {
+            remaining = give(group.ordinal(), group.maxLimit * motors.get(group.ordinal()).size(), remaining);
+        }
+
+        for (Group group : groups) {
+            push(group);
+        }
+
+        if (LoopBudget.shouldRunNonCritical()) {
+            budgetPub.set(budget);
+            drawnPub.set(drawnTotal);
+            modePub.set(mode.name());
+        }
+    }
+
+    /**
+     * Raises a group's allocation towards target out of what's left.
+     * @return what's left after
+     */
+    private static double give(int i, double target, double remaining) {
+        double amount = Math.max(0, Math.min(target - allocation[i], remaining));
+        allocation[i] += amount;
+        return remaining - amount;
+    }
+
+    private static void push(Group group) {
+        int i = group.ordinal();
+        List<BaseTalon> groupMotors = motors.get(i);
+        int count = groupMotors.size();
+        if (count == 0) {
+            return;
+        }
+        double limit = allocation[i] / count;
+        //Small moves wait, landing back on either end always goes out
+        boolean atEnd = limit == group.maxLimit || limit == group.minLimit;
+        if (Math.abs(limit - pushed[i]) <= kPower.pushThreshold && !(atEnd && limit != pushed[i])) {
+            return;
+        }
+        pushed[i] = limit;
+        SupplyCurrentLimitConfiguration config = configs[i];
+        setLimit(config, group, limit);
+        for (int m = 0; m < count; m++) {
+            groupMotors.get(m).configSupplyCurrentLimit(config, 0);
+        }
+    }
+
+    /** Peak scales with the continuous limit so the group keeps its short burst. */
+    private static void setLimit(SupplyCurrentLimitConfiguration config, Group group, double limit) {
+        config.currentLimit = limit;
+        config.triggerThresholdCurrent = limit * group.peakLimit / group.maxLimit;
+        config.triggerThresholdTime = group.peakDuration;
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    /** Amps for all the registered motors together */
+    public static double getBudget() {
+        return budget;
+    }
+
+    /** Amps all the registered motors drew last update */
+    public static double getDrawn() {
+        return drawnTotal;
+    }
+
+    /** Amps one group's motors drew last update */
+    public static double getDrawn(Group group) {
+        return drawn[group.ordinal()];
+    }
+
+    /** Battery volts as the budget sees them, sags right away and recovers slowly */
+    public static double getVoltage() {
+        return voltage;
+    }
+
+    /** Per motor amps last sent to a group */
+    public static double getLimit(Group group) {
+        return pushed[group.ordinal()];
+    }
+}
@@ -179,6 +179,11 @@ public class LimelightHelpers {
         {
             return toPose2D(targetPose_RobotSpace);
         }
+        /** Raw [x, y, z, roll, pitch, yaw] in Limelight camera space, without building a Pose3d */
+        public double[] getTargetPose_CameraSpaceArray()
+        {
+            return targetPose_CameraSpace;
+        }
         
         @JsonProperty("ta")
         public double ta;
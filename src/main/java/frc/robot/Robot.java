@@ -6,12 +6,15 @@ package frc.robot;
 
 import com.pathplanner.lib.server.PathPlannerServer;
 
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.lib.util.LoopBudget;
+import frc.robot.sim.RobotSim;
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -26,6 +29,14 @@ public class Robot extends TimedRobot {
 
   private RobotContainer m_robotContainer;
 
+  /** Times the whole loop (mode periodic, scheduler, dashboard updates) for the loop budget. */
+  @Override
+  protected void loopFunc() {
+    long start = RobotController.getFPGATime();
+    super.loopFunc();
+    LoopBudget.recordLoop((RobotController.getFPGATime() - start) * 1e-6);
+  }
+
   /**
    * This function is run when the robot is first started up and should be used for any
    * initialization code.
@@ -57,6 +68,7 @@ public class Robot extends TimedRobot {
     // and running subsystem periodic() methods.  This must be called from the robot's periodic
     // block in order for anything in the Command-based framework to work.
     CommandScheduler.getInstance().run();
+    CurrentBudget.update();
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
@@ -64,7 +76,9 @@ public class Robot extends TimedRobot {
   public void disabledInit() {}
 
   @Override
-  public void disabledPeriodic() {}
+  public void disabledPeriodic() {
+    m_robotContainer.warmAutos();
+  }
 
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. */
   @Override
@@ -109,4 +123,10 @@ public class Robot extends TimedRobot {
   /** This function is called periodically during test mode. */
   @Override
   public void testPeriodic() {}
+
+  /** Subsystem sims run from the scheduler, this steps the shared battery / pressure model after them. */
+  @Override
+  public void simulationPeriodic() {
+    RobotSim.update(kDefaultPeriod);
+  }
 }
@@ -5,6 +5,12 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.pathplanner.lib.PathConstraints;
 import com.pathplanner.lib.PathPlanner;
@@ -33,6 +39,9 @@ import edu.wpi.first.wpilibj2.command.*;
 import edu.wpi.first.wpilibj2.command.button.JoystickButton;
 import edu.wpi.first.wpilibj2.command.button.POVButton;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.lib.util.AsyncLog;
+import frc.lib.util.AxisShaper;
+import frc.lib.util.TrajectoryService;
 import frc.robot.Constants.*;
 import frc.robot.autos.*;
 import frc.robot.commands.*;
@@ -71,17 +80,24 @@ public class RobotContainer {
     private final JoystickButton robotCentric = new JoystickButton(driver, XboxController.Button.kRightBumper.value);
     private final JoystickButton startCenteringDrive = new JoystickButton(driver, XboxController.Button.kBack.value);
 
+    /* Manipulator stick shaping */
+    private final AxisShaper telescopeShaper = new AxisShaper().exponent(kInput.telescopeExponent).scale(kInput.telescopeScale);
+    private final AxisShaper armShaper = new AxisShaper().exponent(kInput.armExponent).scale(kInput.armScale);
+
     /* Subsystems */
     public  final Swerve s_Swerve = new Swerve();
-    private final Intake s_Intake = new Intake();
-    private final Telescope s_Telescope = new Telescope();
+    private final Pneumatics s_Pneumatics = new Pneumatics();
+    private final Intake s_Intake = new Intake(s_Pneumatics);
+    private final Telescope s_Telescope = new Telescope(s_Pneumatics);
     private final Wrist s_Wrist = new Wrist();
-    private final Arm s_Arm = new Arm();
+    private final Arm s_Arm = new Arm(s_Pneumatics);
+    private final Homing s_Homing = new Homing();
+    private final VisionSubsystem s_Vision = new VisionSubsystem(s_Swerve);
 
     /* PathPlanner */
     HashMap<String, Command> eventMap = new HashMap<>();
 
-    SwerveAutoBuilder autoBuilder = new SwerveAutoBuilder(
+    FeedForwardSwerveAutoBuilder autoBuilder = new FeedForwardSwerveAutoBuilder(
         s_Swerve::getPose, // Pose2d supplier
         s_Swerve::resetOdometry, // Pose2d consumer, used to reset odometry at the beginning of auto
         Constants.kSwerve.swerveKinematics,
@@ -96,12 +112,12 @@ public class RobotContainer {
 
 
     /* Commands */
-    private final AutoBalanceCommand balanceCommand = new AutoBalanceCommand(s_Swerve);
+    private final ChargeStationBalanceCommand balanceCommand = new ChargeStationBalanceCommand(s_Swerve);
     private final Command a = s_Arm.zeroSensorFalcons();
 
     private final IntakeTeleopCommand intakeTeleopCommand = new IntakeTeleopCommand(s_Intake);
     
-    private final AutoBalancePIDCommand autoBalanceCommand = new AutoBalancePIDCommand(s_Swerve);
+    private final ChargeStationBalanceCommand autoBalanceCommand = new ChargeStationBalanceCommand(s_Swerve);
 
     private final SetPositionsCommandGroup scoreMid = new SetPositionsCommandGroup(s_Arm, s_Wrist, s_Telescope, s_Intake, 261.0, s_Wrist.kWristDropPosition, 62854.0, false);
     private final SetPositionsCommandGroup scoreHigh = new SetPositionsCommandGroup(s_Arm, s_Wrist, s_Telescope, s_Intake, 281.0, s_Wrist.kWristDropPosition, 271000, false);
@@ -136,6 +152,13 @@ public class RobotContainer {
     
     /* Auto Commands */
     private SendableChooser<Command> autoChooser = new SendableChooser<>();
+    private final SendableChooser<Integer> nodeChooser = new SendableChooser<>();
+    //Every chooser option with the paths it was built from, for the headless regression run
+    private final Map<String, Command> autoCommands = new LinkedHashMap<>();
+    private final Map<String, CompletableFuture<List<PathPlannerTrajectory>>> autoPaths = new LinkedHashMap<>();
+    private final Map<String, List<PathRetimer.Limits>> autoLimits = new LinkedHashMap<>();
+    private final Map<String, Command> builtAutos = new HashMap<>();
+    private final Set<String> firedEvents = new HashSet<>();
 
     /**
      * The container for the robot. Contains subsystems, OI devices, and commands.
@@ -143,6 +166,10 @@ public class RobotContainer {
 
     public RobotContainer() {
 
+        //Limit switch homing, rezero once per switch closing
+        s_Homing.register("Arm", s_Arm::isLimitSwithEngaged, s_Arm::zeroArmEncoder);
+        s_Homing.register("Wrist", s_Wrist::isLimitSwithEngaged, null);
+        s_Homing.register("Telescope", s_Telescope::isLimitEngaged, null);
         
 
         // new Trigger(() -> true) 
@@ -150,90 +177,116 @@ public class RobotContainer {
 
 
         //Robot States
-        eventMap.put("scoreHigh", scoreHighAuto);
-        eventMap.put("midScore", scoreMidAuto);
-        eventMap.put("scoreMidHold", scoreMid);
-        eventMap.put("intakeDown", goToIntakePosition);
-        eventMap.put("restMode", restModeCommand);
-        eventMap.put("highToIntake", highToIntake);
+        putEvent("scoreHigh", scoreHighAuto);
+        putEvent("midScore", scoreMidAuto);
+        putEvent("scoreMidHold", scoreMid);
+        putEvent("intakeDown", goToIntakePosition);
+        putEvent("restMode", restModeCommand);
+        putEvent("highToIntake", highToIntake);
 
         //intake Settings
-        eventMap.put("intakeUntil", intakeUntil); //stops intake when cone
-        eventMap.put("intakeOff", intakeOff );
-        eventMap.put("intakeOut", new InstantCommand(()->s_Intake.setIntake(-0.2))); //eject
-        eventMap.put("intakeOff", new InstantCommand(()->s_Intake.setIntake(0))); //off
+        putEvent("intakeUntil", intakeUntil); //stops intake when cone
+        putEvent("intakeOff", intakeOff );
+        putEvent("intakeOut", new InstantCommand(()->s_Intake.setIntake(-0.2))); //eject
+        putEvent("intakeOff", new InstantCommand(()->s_Intake.setIntake(0))); //off
 
 
         //End Balance
-        eventMap.put("autoBalance", autoBalanceCommand);
+        putEvent("autoBalance", autoBalanceCommand);
+        putEvent("xLock", new XStanceCommand(s_Swerve)); //holds until auto ends
+
+        //Stop events that overlap driving, each only once its interlock says it can't hit anything
+        autoBuilder.addLeadEvent("scoreHigh", AutoConstants.kScoreLeadSeconds, () -> s_Swerve.getSpeed() < AutoConstants.kScoreLeadMaxSpeed);
+        autoBuilder.addLeadEvent("midScore", AutoConstants.kScoreLeadSeconds, () -> s_Swerve.getSpeed() < AutoConstants.kScoreLeadMaxSpeed);
+        autoBuilder.addLeadEventAtDistance("intakeDown", AutoConstants.kIntakeLeadMeters, () -> s_Swerve.getSpeed() < AutoConstants.kIntakeLeadMaxSpeed);
+        autoBuilder.addTrailEvent("restMode", () -> s_Telescope.getLength() < AutoConstants.kRestDriveAwayLengthCm);
 
       
 
 
 
         //Substation Autos ------------------
+        //Paths that only drive after the preloaded cone is scored are retimed with PathRetimer.emptyLimits,
+        //the ones that intake on the way keep the game piece centripetal limit
       
-        Command auto_Substation_HighConeBal = autoBuilder.fullAuto(PathPlanner.loadPathGroup("test_North_HighConeBal", 2, 2));
-        autoChooser.addOption("NOT TESTED_SubStation_HighCone_DriveAwayBalance", auto_Substation_HighConeBal);        
+        addAuto("NOT TESTED_SubStation_HighCone_DriveAwayBalance", TrajectoryService.loadGroup("test_North_HighConeBal", new PathConstraints(2, 2)));
 
-        Command scoreHigh_MobilityUp = autoBuilder.fullAuto(PathPlanner.loadPathGroup("ScoreHigh_Mobility", 2, 2));
-        autoChooser.addOption("Substation_Score_Moveup_Mobility", scoreHigh_MobilityUp);
+        addAuto("Substation_Score_Moveup_Mobility", TrajectoryService.loadGroup("ScoreHigh_Mobility", new PathConstraints(2, 2)),
+            PathRetimer.emptyLimits);
 
         
 
         //WALL AUTO -----------------------------
-        Command auto_test = autoBuilder.fullAuto(PathPlanner.loadPathGroup("test_South_HighConeBal", 2, 2));
-        autoChooser.addOption("NOT TESTED Wall_HighCone_DriveAwayThenBalance", auto_test);
-
-        Command scoreHigh_Wall_Leave = autoBuilder.fullAuto(PathPlanner.loadPathGroup("ScoreHigh_Rest_Straightout", 2, 2));
-        autoChooser.addOption("scoreHigh_Wall_leave", scoreHigh_Wall_Leave);
-
-        Command doubleWall_2ndCube = autoBuilder.fullAuto(PathPlanner.loadPathGroup("z_Wall_DoubleScore",
-        new PathConstraints(3, 3),
-        new PathConstraints(1.5, 1.5), 
-        new PathConstraints(1, 1),
-        new PathConstraints(1.75, 1.75),
-        new PathConstraints(2.25, 2.25)
-        ));
+        addAuto("NOT TESTED Wall_HighCone_DriveAwayThenBalance", TrajectoryService.loadGroup("test_South_HighConeBal", new PathConstraints(2, 2)));
+
+        Command scoreHigh_Wall_Leave = addAuto("scoreHigh_Wall_leave", TrajectoryService.loadGroup("ScoreHigh_Rest_Straightout", new PathConstraints(2, 2)),
+            PathRetimer.emptyLimits);
+
+        //z_Wall_DoubleScore isn't in deploy yet, add it with addAuto once it is
+        // addAuto("z_Wall_DoubleScore", TrajectoryService.loadGroup("z_Wall_DoubleScore",
+        // new PathConstraints(3, 3),
+        // new PathConstraints(1.5, 1.5), 
+        // new PathConstraints(1, 1),
+        // new PathConstraints(1.75, 1.75),
+        // new PathConstraints(2.25, 2.25)
+        // ));
         autoChooser.addOption("scoreHigh_Wall_leave", scoreHigh_Wall_Leave);
 
 
      //MID AUTOS -------------------------
-        Command autoMidOneConeTest = autoBuilder.fullAuto(PathPlanner.loadPathGroup("test_Middle_HighConeBal", 
+        addAuto("Experimental_Mid_OneCone_MobilityBalance", TrajectoryService.loadGroup("test_Middle_HighConeBal", 
             new PathConstraints(2.25, 2.5),
             new PathConstraints(1, 1), 
-            new PathConstraints(2.1, 2.1)));
-        autoChooser.addOption("Experimental_Mid_OneCone_MobilityBalance", autoMidOneConeTest);
+            new PathConstraints(2.1, 2.1)),
+            PathRetimer.emptyLimits, PathRetimer.emptyLimits, PathRetimer.emptyLimits);
 
         
-        Command auto_Mid_1Cone_Balance = autoBuilder.fullAuto(PathPlanner.loadPathGroup("CompAuto2_1ConeBalance_Middle", 2, 2));
-        autoChooser.addOption("SafeBalance_NoLeave", auto_Mid_1Cone_Balance);
+        addAuto("SafeBalance_NoLeave", TrajectoryService.loadGroup("CompAuto2_1ConeBalance_Middle", new PathConstraints(2, 2)),
+            PathRetimer.emptyLimits);
 
   
 
 
 
 
+        //Drive acceleration limited by how far out the arm and telescope put the CoG
+        s_Swerve.setTippingModel(new TippingModel(s_Arm::getArmEcnoderAngle, s_Telescope::getLength));
+
+        //Battery goes to the drive while climbing the charge station, to the superstructure while it's out scoring
+        CurrentBudget.setModeSupplier(() -> {
+            if (balanceCommand.isScheduled() || autoBalanceCommand.isScheduled()
+                    || Math.abs(s_Swerve.getRoll()) > kPower.climbTilt || Math.abs(s_Swerve.getPitch()) > kPower.climbTilt) {
+                return CurrentBudget.Mode.BALANCE;
+            }
+            if (s_Arm.getArmEcnoderAngle() > kPower.scoringArmAngle) {
+                return CurrentBudget.Mode.SCORING;
+            }
+            return CurrentBudget.Mode.DRIVE;
+        });
+
         s_Swerve.setDefaultCommand(
                 new TeleopSwerve(
                         s_Swerve,
                         () -> -driver.getRawAxis(translationAxis),
                         () -> -driver.getRawAxis(strafeAxis),
                         () -> -driver.getRawAxis(rotationAxis),
-                        () -> robotCentric.getAsBoolean()));
+                        () -> robotCentric.getAsBoolean(),
+                        () -> driver.getRawAxis(XboxController.Axis.kLeftTrigger.value) > 0.5, //aim assist while held
+                        () -> s_Vision.getFrame(0),
+                        () -> driver.getRawAxis(XboxController.Axis.kRightTrigger.value) > 0.5)); //precision mode while held
 
 
         s_Telescope.setDefaultCommand(
             new TelescopePercentCommand(
                 s_Telescope,
-                () -> -1.0 * manipulate.getRawAxis(1) * manipulate.getRawAxis(1) * Math.signum(manipulate.getRawAxis(1)) 
+                () -> telescopeShaper.calculate(-manipulate.getRawAxis(1))
             )
         );
 
         s_Arm.setDefaultCommand(
             new ArmPercentCommand(
                 s_Arm,
-                () -> -0.75 * manipulate.getRawAxis(0) * manipulate.getRawAxis(0) * Math.signum(manipulate.getRawAxis(0)) 
+                () -> armShaper.calculate(-manipulate.getRawAxis(0))
             )
         );
 
@@ -284,6 +337,16 @@ public class RobotContainer {
 
         // SmartDashboard.putData("Wrist PID test", new HoldWristPIDCommand(s_Wrist, 30500));
         SmartDashboard.putData("Auto Selection", autoChooser);
+        SmartDashboard.putData("Path Retime Report", new InstantCommand(this::logRetimeReport).ignoringDisable(true));
+
+        //Grid nodes numbered from the cable side, for DriveToNodeCommand
+        nodeChooser.setDefaultOption("Node 5 (co-op cube)", 4);
+        for (int node = 0; node < Constants.kGrid.nodeY.length; node++) {
+            if (node != 4) {
+                nodeChooser.addOption("Node " + (node + 1), node);
+            }
+        }
+        SmartDashboard.putData("Target Node", nodeChooser);
 
         // SmartDashboard.putData(s_Arm);
         // SmartDashboard.putData("Akjkjtuo Balance", balanceCommand);
@@ -350,8 +413,19 @@ public class RobotContainer {
         new JoystickButton(driver, XboxController.Button.kStart.value)
             .onTrue(new InstantCommand(s_Swerve::resetModulesToAbsolute));
 
+        //Drive to the node picked on the dashboard, hold to keep going
+        new JoystickButton(driver, XboxController.Button.kRightStick.value)
+            .whileTrue(new DriveToNodeCommand(s_Swerve, nodeChooser::getSelected));
+
+        //Defense stance, any stick releases it
+        new JoystickButton(driver, XboxController.Button.kX.value)
+            .onTrue(new XStanceCommand(s_Swerve,
+                () -> driver.getRawAxis(translationAxis),
+                () -> driver.getRawAxis(strafeAxis),
+                () -> driver.getRawAxis(rotationAxis)));
+
         new JoystickButton(driver, XboxController.Button.kLeftBumper.value)
-            .onTrue(new runPathAuto(s_Swerve, Constants.PathPlannerSimpleTrajectories.advanceNorth_22inches));
+            .onTrue(runPathAuto.whenReady(s_Swerve, Constants.PathPlannerSimpleTrajectories.advanceNorth_22inches));
 
         
             //This demonstrates Instance Command FActory Methods - it's cool :D
@@ -432,6 +506,136 @@ public class RobotContainer {
     //     }
     // }
 
+    /**
+     * Adds a path event and records when it fires. Wrapped the same way PathPlanner wraps event
+     * commands so the command can still be bound to buttons without being composed twice.
+     */
+    private void putEvent(String name, Command command) {
+        String message = "Auto event: " + name; //built once here, not every time the event fires
+        eventMap.put(name, new FunctionalCommand(
+            () -> {
+                firedEvents.add(name);
+                AsyncLog.log(message);
+                command.initialize();
+            },
+            command::execute,
+            command::end,
+            command::isFinished,
+            command.getRequirements().toArray(Subsystem[]::new)));
+    }
+
+    /**
+     * Builds a full auto from a path group and adds it to the chooser.
+     * @param pathLimits what the retime report holds each path of the group to, by index.
+     * Paths past the end use PathRetimer.robotLimits.
+     */
+    private Command addAuto(String name, CompletableFuture<List<PathPlannerTrajectory>> pathGroup, PathRetimer.Limits... pathLimits) {
+        autoPaths.put(name, pathGroup);
+        autoLimits.put(name, List.of(pathLimits));
+        Command auto = new ProxyCommand(() -> getBuiltAuto(name));
+        autoChooser.addOption(name, auto);
+        autoCommands.put(name, auto);
+        return auto;
+    }
+
+    /**
+     * Builds the autos whose paths have finished loading. Called while disabled, so by the time
+     * auto starts the chooser's command is already built and nothing is computed in the loop.
+     */
+    public void warmAutos() {
+        for (Map.Entry<String, CompletableFuture<List<PathPlannerTrajectory>>> entry : autoPaths.entrySet()) {
+            CompletableFuture<List<PathPlannerTrajectory>> pathGroup = entry.getValue();
+            if (!builtAutos.containsKey(entry.getKey()) && pathGroup.isDone() && !pathGroup.isCompletedExceptionally()) {
+                builtAutos.put(entry.getKey(), autoBuilder.fullAuto(pathGroup.join()));
+            }
+        }
+    }
+
+    /**
+     * Builds an auto from its loaded paths, for comparing against stopping at every stop event.
+     */
+    public Command buildAuto(String name, boolean overlapStops) {
+        autoBuilder.setOverlapStops(overlapStops);
+        try {
+            return autoBuilder.fullAuto(autoPaths.get(name).join());
+        } finally {
+            autoBuilder.setOverlapStops(true);
+        }
+    }
+
+    private Command getBuiltAuto(String name) {
+        Command auto = builtAutos.get(name);
+        if (auto != null) {
+            return auto;
+        }
+        CompletableFuture<List<PathPlannerTrajectory>> pathGroup = autoPaths.get(name);
+        if (pathGroup.isCompletedExceptionally()) {
+            AsyncLog.log("Auto paths failed to load: " + name);
+            return new InstantCommand();
+        }
+        if (!pathGroup.isDone()) {
+            //Auto started before the paths finished loading, wait for the worker instead of blocking the loop
+            AsyncLog.log("Auto wasn't ready before enable, waiting for its paths: " + name);
+            return new WaitUntilCommand(pathGroup::isDone).andThen(new ProxyCommand(() -> getBuiltAuto(name)));
+        }
+        auto = autoBuilder.fullAuto(pathGroup.join()); //already loaded, join doesn't wait
+        builtAutos.put(name, auto);
+        return auto;
+    }
+
+    /**
+     * @return every auto chooser option, in the order they were added
+     */
+    public Map<String, Command> getAutoCommands() {
+        return autoCommands;
+    }
+
+    /**
+     * @return the path group each auto in {@link #getAutoCommands()} follows
+     */
+    public Map<String, CompletableFuture<List<PathPlannerTrajectory>>> getAutoPaths() {
+        return autoPaths;
+    }
+
+    /**
+     * @return the retime limits for each path of each auto in {@link #getAutoCommands()}
+     */
+    public Map<String, List<PathRetimer.Limits>> getAutoLimits() {
+        return autoLimits;
+    }
+
+    /**
+     * Blocks until every auto's paths have loaded, only for tools and the worker thread.
+     */
+    public Map<String, List<PathPlannerTrajectory>> getLoadedAutoPaths() {
+        Map<String, List<PathPlannerTrajectory>> loaded = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<List<PathPlannerTrajectory>>> entry : autoPaths.entrySet()) {
+            loaded.put(entry.getKey(), entry.getValue().join());
+        }
+        return loaded;
+    }
+
+    //Runs after the path loads on the worker (it's first in first out), so joining there doesn't wait
+    private void logRetimeReport() {
+        TrajectoryService.submit("report/retime", () -> PathRetimer.report(getLoadedAutoPaths(), autoLimits))
+            .thenAccept(lines -> lines.forEach(AsyncLog::log));
+    }
+
+    public Map<String, Command> getEventMap() {
+        return eventMap;
+    }
+
+    /**
+     * @return names of path events that have started since the last {@link #clearFiredEvents()}
+     */
+    public Set<String> getFiredEvents() {
+        return firedEvents;
+    }
+
+    public void clearFiredEvents() {
+        firedEvents.clear();
+    }
+
     /**
      * Use this to pass the autonomous command to the main {@link Robot} class.
      *
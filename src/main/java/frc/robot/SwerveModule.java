@@ -4,13 +4,18 @@ import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
 
 import frc.lib.math.Conversions;
 import frc.lib.util.CTREModuleState;
 import frc.lib.util.SwerveModuleConstants;
+import frc.robot.sim.RobotSim;
 
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.DemandType;
+import com.ctre.phoenix.motorcontrol.TalonFXSimCollection;
 import com.ctre.phoenix.motorcontrol.can.TalonFX;
 import com.ctre.phoenix.sensors.CANCoder;
 
@@ -24,6 +29,19 @@ public class SwerveModule {
     private CANCoder angleEncoder;
 
     SimpleMotorFeedforward feedforward = new SimpleMotorFeedforward(Constants.kSwerve.driveKS, Constants.kSwerve.driveKV, Constants.kSwerve.driveKA);
+    private final Setpoint setpoint = new Setpoint();
+
+    /** What setDesiredState sends the Talons, see {@link #calculateSetpoint}. */
+    public static final class Setpoint {
+        public Rotation2d angle = new Rotation2d();
+        public double angleCounts;
+        public double drive; //percent output open loop, counts per 100ms closed loop
+        public double feedforward; //arbitrary feed-forward, closed loop only
+    }
+
+    /* Simulation, in mechanism units (module angle / wheel) */
+    private DCMotorSim angleSim;
+    private DCMotorSim driveSim;
 
     public SwerveModule(int moduleNumber, SwerveModuleConstants moduleConstants){
         this.moduleNumber = moduleNumber;
@@ -42,32 +60,57 @@ public class SwerveModule {
         mDriveMotor = new TalonFX(moduleConstants.driveMotorID, "CANivore");
         configDriveMotor();
 
+        CurrentBudget.register(CurrentBudget.Group.STEER, mAngleMotor);
+        CurrentBudget.register(CurrentBudget.Group.DRIVE, mDriveMotor);
+
         lastAngle = getState().angle;
     }
 
     public void setDesiredState(SwerveModuleState desiredState, boolean isOpenLoop){
-        /* This is a custom optimize function, since default WPILib optimize assumes continuous controller which CTRE and Rev onboard is not */
-        desiredState = CTREModuleState.optimize(desiredState, getState().angle); 
-        setAngle(desiredState);
-        setSpeed(desiredState, isOpenLoop);
+        calculateSetpoint(desiredState, getState().angle, lastAngle, isOpenLoop, feedforward, setpoint);
+        lastAngle = setpoint.angle;
+
+        mAngleMotor.set(ControlMode.Position, setpoint.angleCounts);
+        if(isOpenLoop){
+            mDriveMotor.set(ControlMode.PercentOutput, setpoint.drive);
+        }
+        else {
+            mDriveMotor.set(ControlMode.Velocity, setpoint.drive, DemandType.ArbitraryFeedForward, setpoint.feedforward);
+        }
     }
 
-    private void setSpeed(SwerveModuleState desiredState, boolean isOpenLoop){
+    /**
+     * The math half of setDesiredState, no devices touched, so SwerveDriveBenchmark times the same code.
+     * @param currentAngle where the module is pointed now
+     * @param lastAngle the angle last sent, held while the speed is under 1% so the module doesn't jitter
+     * @param setpoint filled in with what goes to the Talons
+     */
+    public static void calculateSetpoint(SwerveModuleState desiredState, Rotation2d currentAngle, Rotation2d lastAngle, boolean isOpenLoop, SimpleMotorFeedforward feedforward, Setpoint setpoint){
+        /* This is a custom optimize function, since default WPILib optimize assumes continuous controller which CTRE and Rev onboard is not */
+        desiredState = CTREModuleState.optimize(desiredState, currentAngle);
+
+        setpoint.angle = (Math.abs(desiredState.speedMetersPerSecond) <= (Constants.kSwerve.maxSpeed * 0.01)) ? lastAngle : desiredState.angle; //Prevent rotating module if speed is less then 1%. Prevents Jittering.
+        setpoint.angleCounts = Conversions.degreesToFalcon(setpoint.angle.getDegrees(), Constants.kSwerve.angleGearRatio);
+
         if(isOpenLoop){
-            double percentOutput = desiredState.speedMetersPerSecond / Constants.kSwerve.maxSpeed;
-            mDriveMotor.set(ControlMode.PercentOutput, percentOutput);
+            setpoint.drive = desiredState.speedMetersPerSecond / Constants.kSwerve.maxSpeed;
+            setpoint.feedforward = 0;
         }
         else {
-            double velocity = Conversions.MPSToFalcon(desiredState.speedMetersPerSecond, Constants.kSwerve.wheelCircumference, Constants.kSwerve.driveGearRatio);
-            mDriveMotor.set(ControlMode.Velocity, velocity, DemandType.ArbitraryFeedForward, feedforward.calculate(desiredState.speedMetersPerSecond));
+            setpoint.drive = Conversions.MPSToFalcon(desiredState.speedMetersPerSecond, Constants.kSwerve.wheelCircumference, Constants.kSwerve.driveGearRatio);
+            setpoint.feedforward = feedforward.calculate(desiredState.speedMetersPerSecond);
         }
     }
 
-    private void setAngle(SwerveModuleState desiredState){
-        Rotation2d angle = (Math.abs(desiredState.speedMetersPerSecond) <= (Constants.kSwerve.maxSpeed * 0.01)) ? lastAngle : desiredState.angle; //Prevent rotating module if speed is less then 1%. Prevents Jittering.
-        
-        mAngleMotor.set(ControlMode.Position, Conversions.degreesToFalcon(angle.getDegrees(), Constants.kSwerve.angleGearRatio));
-        lastAngle = angle;
+    /**
+     * Points the module at an angle with the wheel stopped. Unlike setDesiredState this always turns,
+     * the under 1% speed jitter guard would otherwise hold the last angle.
+     */
+    public void lockAt(Rotation2d angle){
+        SwerveModuleState lockState = CTREModuleState.optimize(new SwerveModuleState(0, angle), getState().angle);
+        mAngleMotor.set(ControlMode.Position, Conversions.degreesToFalcon(lockState.angle.getDegrees(), Constants.kSwerve.angleGearRatio));
+        mDriveMotor.set(ControlMode.PercentOutput, 0);
+        lastAngle = lockState.angle;
     }
 
     private Rotation2d getAngle(){
@@ -115,6 +158,44 @@ public class SwerveModule {
         ); 
     }
 
+    /**
+     * Steps the module physics and writes the results back into the Talon and CANCoder sim collections.
+     * The Talons run their own closed loops in sim, this only has to close the loop through physics.
+     */
+    public void simulationPeriodic(double dtSeconds){
+        if(angleSim == null){
+            angleSim = new DCMotorSim(DCMotor.getFalcon500(1), Constants.kSwerve.angleGearRatio, 0.004);
+            driveSim = new DCMotorSim(DCMotor.getFalcon500(1), Constants.kSwerve.driveGearRatio, 0.025);
+        }
+        TalonFXSimCollection angleSimState = mAngleMotor.getSimCollection();
+        TalonFXSimCollection driveSimState = mDriveMotor.getSimCollection();
+        double busVoltage = RobotController.getBatteryVoltage();
+        angleSimState.setBusVoltage(busVoltage);
+        driveSimState.setBusVoltage(busVoltage);
+
+        //Sim collections are in the motor's uninverted frame
+        double angleSign = Constants.kSwerve.angleMotorInvert ? -1 : 1;
+        double driveSign = Constants.kSwerve.driveMotorInvert ? -1 : 1;
+        angleSim.setInputVoltage(angleSign * angleSimState.getMotorOutputLeadVoltage());
+        driveSim.setInputVoltage(driveSign * driveSimState.getMotorOutputLeadVoltage());
+        angleSim.update(dtSeconds);
+        driveSim.update(dtSeconds);
+
+        double angleRotations = angleSim.getAngularPositionRotations();
+        angleSimState.setIntegratedSensorRawPosition((int) (angleSign * angleRotations * Constants.kSwerve.angleGearRatio * 2048.0));
+        angleSimState.setIntegratedSensorVelocity((int) (angleSign * angleSim.getAngularVelocityRPM() * Constants.kSwerve.angleGearRatio * 2048.0 / 600.0));
+        driveSimState.setIntegratedSensorRawPosition((int) (driveSign * driveSim.getAngularPositionRotations() * Constants.kSwerve.driveGearRatio * 2048.0));
+        driveSimState.setIntegratedSensorVelocity((int) (driveSign * driveSim.getAngularVelocityRPM() * Constants.kSwerve.driveGearRatio * 2048.0 / 600.0));
+        driveSimState.setSupplyCurrent(Math.abs(driveSim.getCurrentDrawAmps()));
+
+        //CANCoder reads the module angle plus its offset
+        double absoluteDegrees = angleRotations * 360.0 + angleOffset.getDegrees();
+        angleEncoder.getSimCollection().setRawPosition((int) (absoluteDegrees / 360.0 * 4096.0));
+
+        RobotSim.addCurrent(angleSim.getCurrentDrawAmps());
+        RobotSim.addCurrent(driveSim.getCurrentDrawAmps());
+    }
+
     public SwerveModulePosition getPosition(){
         return new SwerveModulePosition(
             Conversions.falconToMeters(mDriveMotor.getSelectedSensorPosition(), Constants.kSwerve.wheelCircumference, Constants.kSwerve.driveGearRatio), 
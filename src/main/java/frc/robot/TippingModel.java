@@ -0,0 +1,115 @@
+package frc.robot;
+
+import java.util.function.DoubleSupplier;
+
+import frc.robot.Constants.kArm;
+import frc.robot.Constants.kTelescope;
+import frc.robot.Constants.kTipping;
+
+/**
+ * Point mass center of gravity for the robot from the arm angle and telescope extension, and the
+ * chassis accelerations it can take before tipping. Three masses: the chassis, the arm tube at a
+ * fixed fraction of its length, and the telescope carriage at the end of the arm plus extension.
+ *
+ * <p>Accelerating shifts the point the robot's weight acts through (the zero moment point) away
+ * from the direction of travel by cogHeight * a / g. The robot stays on its wheels while that
+ * point is inside the wheels, so each direction's limit is g * (distance from the CoG to the edge
+ * behind it) / cogHeight, scaled by {@link kTipping#safetyFactor}.
+ */
+public final class TippingModel {
+    private static final double g = 9.81;
+
+    private final DoubleSupplier armAngle;
+    private final DoubleSupplier telescopeLength;
+
+    private double cogX;
+    private double cogHeight;
+    private double minAccelX, maxAccelX, minAccelY, maxAccelY;
+
+    /**
+     * @param armAngle arm CANCoder angle, fake degrees from hanging straight down ({@link kArm#fakeDegreesPerDegree})
+     * @param telescopeLength extension in cm
+     */
+    public TippingModel(DoubleSupplier armAngle, DoubleSupplier telescopeLength) {
+        this.armAngle = armAngle;
+        this.telescopeLength = telescopeLength;
+        calculate(0, 0);
+    }
+
+    /** Recalculates from the suppliers. */
+    public void update() {
+        calculate(armAngle.getAsDouble(), telescopeLength.getAsDouble());
+    }
+
+    public void calculate(double armFakeDegrees, double telescopeCm) {
+        double angle = Math.toRadians(armFakeDegrees / kArm.fakeDegreesPerDegree);
+        double sin = Math.sin(angle);
+        double cos = Math.cos(angle);
+
+        double armRadius = kArm.lengthMeters * kTipping.armCogFraction;
+        double carriageRadius = kArm.lengthMeters + Math.max(0, telescopeCm) / 100.0;
+
+        double mass = kTipping.chassisMassKg + kArm.massKg + kTelescope.carriageMassKg;
+        cogX = (kArm.massKg * (kTipping.pivotX + armRadius * sin)
+            + kTelescope.carriageMassKg * (kTipping.pivotX + carriageRadius * sin)) / mass;
+        cogHeight = (kTipping.chassisMassKg * kTipping.chassisCogHeight
+            + kArm.massKg * (kTipping.pivotHeight - armRadius * cos)
+            + kTelescope.carriageMassKg * (kTipping.pivotHeight - carriageRadius * cos)) / mass;
+        cogHeight = Math.max(0.01, cogHeight);
+
+        //Speeding up forward tips back over the rear wheels, and so on. The arm is on the center line.
+        maxAccelX = envelope(kTipping.supportHalfLength + cogX);
+        minAccelX = -envelope(kTipping.supportHalfLength - cogX);
+        maxAccelY = envelope(kTipping.supportHalfWidth);
+        minAccelY = -envelope(kTipping.supportHalfWidth);
+    }
+
+    /**
+     * @return allowed acceleration towards the edge this far from the CoG, infinite if it's past traction
+     */
+    private double envelope(double edgeDistance) {
+        double accel = kTipping.safetyFactor * g * Math.max(0, edgeDistance) / cogHeight;
+        return accel >= kTipping.tractionLimit ? Double.POSITIVE_INFINITY : accel;
+    }
+
+    /**
+     * @param accelX robot frame acceleration, m/s^2
+     * @param accelY robot frame acceleration, m/s^2
+     * @return how far inside the wheels the zero moment point is, meters, negative once the robot is tipping
+     */
+    public double getMargin(double accelX, double accelY) {
+        double zmpX = cogX - cogHeight * accelX / g;
+        double zmpY = -cogHeight * accelY / g;
+        return Math.min(kTipping.supportHalfLength - Math.abs(zmpX), kTipping.supportHalfWidth - Math.abs(zmpY));
+    }
+
+    /** Meters forward of the robot center */
+    public double getCogX() {
+        return cogX;
+    }
+
+    /** Meters off the floor */
+    public double getCogHeight() {
+        return cogHeight;
+    }
+
+    /** m/s^2, negative */
+    public double getMinAccelX() {
+        return minAccelX;
+    }
+
+    /** m/s^2 */
+    public double getMaxAccelX() {
+        return maxAccelX;
+    }
+
+    /** m/s^2, negative */
+    public double getMinAccelY() {
+        return minAccelY;
+    }
+
+    /** m/s^2 */
+    public double getMaxAccelY() {
+        return maxAccelY;
+    }
+}
@@ -0,0 +1,124 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.autos;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.lib.util.AsyncLog;
+import frc.robot.Constants.kBalance;
+import frc.robot.Constants.kSwerve;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Balances on the charge station using {@link ChargeStationModel}. While the platform sits on its
+ * hard stop it climbs towards the raised end. Once the Pigeon's roll rate says the platform has
+ * started to tip, the model is solved for how far past the pivot the robot already is, and from
+ * then on the robot is driven with state feedback on its distance from the pivot, the tilt and the
+ * tilt rate. The gains put the closed loop poles at {@link kBalance#closedLoopPole}, so it backs off
+ * as soon as the tip starts instead of following the platform over. The pivot estimate keeps
+ * creeping towards wherever holds the platform level, which takes out model and odometry error.
+ * Finishes X-locked after being level for {@link kBalance#settleTime}, and reports how long it took.
+ */
+public class ChargeStationBalanceCommand extends CommandBase {
+  //{position, angle, rate}, see ChargeStationModel#placePoles
+  private static final double[] gains = ChargeStationModel.placePoles(kBalance.closedLoopPole);
+
+  private final Swerve swerve;
+  private final Timer timer = new Timer();
+
+  private boolean isHolding = false;
+  private double pivotX = Double.NaN;
+  private double lastRate = Double.NaN;
+  private double lastTime = Double.NaN;
+  private double levelSince = Double.NaN;
+  private double timeToBalance = Double.NaN;
+
+  public ChargeStationBalanceCommand(Swerve swerve) {
+    this.swerve = swerve;
+
+    addRequirements(swerve);
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    timer.restart();
+    isHolding = false;
+    pivotX = Double.NaN;
+    lastRate = Double.NaN;
+    lastTime = Double.NaN;
+    levelSince = Double.NaN;
+    timeToBalance = Double.NaN;
+  }
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    double now = timer.get();
+    double roll = swerve.getRoll();
+    double rollRate = swerve.getRollRate();
+    double angle = Math.toRadians(roll);
+    double rate = Math.toRadians(rollRate);
+    double dt = Double.isNaN(lastTime) ? 0 : now - lastTime;
+    double accel = dt > 0 ? (rate - lastRate) / dt : 0;
+    lastRate = rate;
+    lastTime = now;
+
+    if (Math.abs(roll) < kBalance.levelTolerance && Math.abs(rollRate) < kBalance.levelRate) {
+      if (Double.isNaN(levelSince)) {
+        levelSince = now;
+      }
+    } else {
+      levelSince = Double.NaN;
+    }
+
+    double x = swerve.getPose().getX();
+    if (!isHolding) {
+      boolean isTipping = Math.signum(rollRate) == -Math.signum(roll) && Math.abs(rollRate) > kBalance.tipRate;
+      if (!isTipping) {
+        //Platform is still on its stop, the robot's weight tips it once it's past the pivot
+        swerve.driveHorizontal(-Math.signum(roll) * kBalance.climbSpeed);
+        return;
+      }
+      isHolding = true;
+      pivotX = x - ChargeStationModel.estimateOffset(angle, rate, accel);
+      AsyncLog.log("Balance: tipping, robot past the pivot by (m): ", x - pivotX);
+    }
+
+    //A tilt that won't go away means the pivot isn't where the estimate says
+    pivotX -= kBalance.pivotGain * angle * dt;
+    double velocity = -gains[0] * (x - pivotX) - gains[1] * angle - gains[2] * rate;
+    velocity = MathUtil.clamp(velocity, -kBalance.maxHoldSpeed, kBalance.maxHoldSpeed);
+    swerve.driveHorizontal(velocity / kSwerve.maxSpeed);
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    swerve.lockModulesInX();
+    if (!interrupted) {
+      timeToBalance = timer.get();
+      AsyncLog.log("Balance: time to balance (s): ", timeToBalance);
+      AsyncLog.log("Balance: match time left (s): ", DriverStation.getMatchTime());
+      SmartDashboard.putNumber("Balance: Time To Balance", timeToBalance);
+    }
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return !Double.isNaN(levelSince) && timer.get() - levelSince >= kBalance.settleTime;
+  }
+
+  /**
+   * @return seconds from start until balanced on the last run, NaN if it didn't finish
+   */
+  public double getTimeToBalance() {
+    return timeToBalance;
+  }
+}
@@ -0,0 +1,82 @@
+package frc.robot.autos;
+
+import frc.robot.Constants.kBalance;
+import frc.robot.Constants.kSwerve;
+
+/**
+ * The charge station as a seesaw along field x: the robot's weight torques the platform about its
+ * pivot, the hinge damping and centering resist it and it stops at the 15 degree hard stops.
+ * <pre>
+ * inertia * accel = mass * g * offset * cos(angle) - damping * rate - centering * angle
+ * </pre>
+ * ChargeStationBalanceCommand solves this for where the robot is on the platform and places its
+ * gains from it, the simulation steps it. Angles are radians, positive when the +x end is down.
+ */
+public final class ChargeStationModel {
+    private static final double gravity = 9.81;
+
+    private double angle = 0.0;
+    private double velocity = 0.0;
+
+    /** Level and still. */
+    public void reset() {
+        angle = 0.0;
+        velocity = 0.0;
+    }
+
+    /**
+     * @param robotOffset meters from the pivot to the robot's center of mass along x, NaN when the robot isn't on it
+     */
+    public void update(double robotOffset, double dtSeconds) {
+        velocity += getAccel(angle, velocity, Double.isNaN(robotOffset) ? 0.0 : robotOffset) * dtSeconds;
+        angle += velocity * dtSeconds;
+
+        double maxAngle = Math.toRadians(kBalance.stationMaxAngle);
+        if (Math.abs(angle) >= maxAngle) {
+            angle = Math.copySign(maxAngle, angle);
+            velocity = 0.0;
+        }
+    }
+
+    public double getAngle() {
+        return angle;
+    }
+
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * @return radians per second squared, away from the hard stops
+     */
+    public static double getAccel(double angle, double rate, double robotOffset) {
+        double torque = kSwerve.robotMassKg * gravity * robotOffset * Math.cos(angle)
+            - kBalance.stationDamping * rate
+            - kBalance.stationCentering * angle;
+        return torque / kBalance.stationInertia;
+    }
+
+    /**
+     * Where the robot has to be for the platform to move like it is, the model solved for the offset.
+     * Meaningless while it's sitting on a hard stop.
+     * @return meters from the pivot to the robot's center of mass, positive towards +x
+     */
+    public static double estimateOffset(double angle, double rate, double accel) {
+        double torque = kBalance.stationInertia * accel + kBalance.stationDamping * rate + kBalance.stationCentering * angle;
+        return torque / (kSwerve.robotMassKg * gravity * Math.cos(angle));
+    }
+
+    /**
+     * Gains for v = -position * (x - pivot) - angle * angle - rate * rate that put all three closed
+     * loop poles of the linearized station and robot at -pole, the robot taken as an ideal velocity source.
+     * @return {position (1/s), angle (m/s per radian), rate (m/s per radian/s)}
+     */
+    public static double[] placePoles(double pole) {
+        double inertia = kBalance.stationInertia;
+        double weight = kSwerve.robotMassKg * gravity;
+        double position = 3 * pole - kBalance.stationDamping / inertia;
+        double rate = (3 * pole * pole * inertia - kBalance.stationCentering - kBalance.stationDamping * position) / weight;
+        double angle = (pole * pole * pole * inertia - kBalance.stationCentering * position) / weight;
+        return new double[] {position, angle, rate};
+    }
+}
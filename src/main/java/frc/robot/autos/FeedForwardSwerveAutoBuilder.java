@@ -0,0 +1,342 @@
+package frc.robot.autos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.StopEvent;
+import com.pathplanner.lib.PathPlannerTrajectory.StopEvent.ExecutionBehavior;
+import com.pathplanner.lib.PathPlannerTrajectory.StopEvent.WaitBehavior;
+import com.pathplanner.lib.auto.PIDConstants;
+import com.pathplanner.lib.auto.SwerveAutoBuilder;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj2.command.Commands;
+import edu.wpi.first.wpilibj2.command.FunctionalCommand;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+
+/**
+ * SwerveAutoBuilder that follows each path with {@link FeedForwardSwerveFollower} instead of
+ * PPSwerveControllerCommand. Events, stop points and pose resets are all still the builder's.
+ *
+ * <p>Stop events can also overlap the drive instead of making the robot sit still:
+ * <ul>
+ * <li>lead events start a set time or distance before the path reaches the stop, so the arm is
+ * already moving while the drive decelerates</li>
+ * <li>trail events keep running after the robot leaves the stop, the drive only waits until it's
+ * clear</li>
+ * </ul>
+ * Each one has an interlock that has to be true before the overlap happens. Without it the event
+ * runs exactly where it would have anyway, so an overlapped auto is never slower than a plain one.
+ */
+public class FeedForwardSwerveAutoBuilder extends SwerveAutoBuilder {
+    private final Supplier<Pose2d> poseSupplier;
+    private final SwerveDriveKinematics kinematics;
+    private final PIDConstants translationConstants;
+    private final PIDConstants rotationConstants;
+    private final Consumer<SwerveModuleState[]> outputModuleStates;
+    private final boolean useAllianceColor;
+    private final Subsystem[] driveRequirements;
+
+    private final Map<String, LeadEvent> leadEvents = new HashMap<>();
+    private final Map<String, BooleanSupplier> trailEvents = new HashMap<>();
+    private boolean overlapStops = true;
+
+    private static final class LeadEvent {
+        final double seconds;
+        final double meters;
+        final BooleanSupplier interlock;
+
+        LeadEvent(double seconds, double meters, BooleanSupplier interlock) {
+            this.seconds = seconds;
+            this.meters = meters;
+            this.interlock = interlock;
+        }
+    }
+
+    /** When each path of a segment started, and whether the robot has got to the next stop yet */
+    private static final class SegmentClock {
+        private double startTime = Double.NaN;
+        private boolean arrived;
+        private boolean trailDone;
+
+        void reset() {
+            startTime = Double.NaN;
+            arrived = false;
+            trailDone = false;
+        }
+
+        void start() {
+            startTime = Timer.getFPGATimestamp();
+        }
+
+        boolean hasElapsed(double seconds) {
+            return !Double.isNaN(startTime) && Timer.getFPGATimestamp() - startTime >= seconds;
+        }
+    }
+
+    public FeedForwardSwerveAutoBuilder(
+            Supplier<Pose2d> poseSupplier,
+            Consumer<Pose2d> resetPose,
+            SwerveDriveKinematics kinematics,
+            PIDConstants translationConstants,
+            PIDConstants rotationConstants,
+            Consumer<SwerveModuleState[]> outputModuleStates,
+            Map<String, Command> eventMap,
+            boolean useAllianceColor,
+            Subsystem... driveRequirements) {
+        super(poseSupplier, resetPose, kinematics, translationConstants, rotationConstants, outputModuleStates, eventMap, useAllianceColor, driveRequirements);
+        this.poseSupplier = poseSupplier;
+        this.kinematics = kinematics;
+        this.translationConstants = translationConstants;
+        this.rotationConstants = rotationConstants;
+        this.outputModuleStates = outputModuleStates;
+        this.useAllianceColor = useAllianceColor;
+        this.driveRequirements = driveRequirements;
+    }
+
+    /**
+     * Starts the stop event this many seconds before the path ends, once the interlock is true.
+     */
+    public void addLeadEvent(String name, double leadSeconds, BooleanSupplier interlock) {
+        leadEvents.put(name, new LeadEvent(leadSeconds, Double.NaN, interlock));
+    }
+
+    /**
+     * Starts the stop event once the path is this many meters from its end and the interlock is true.
+     */
+    public void addLeadEventAtDistance(String name, double leadMeters, BooleanSupplier interlock) {
+        leadEvents.put(name, new LeadEvent(Double.NaN, leadMeters, interlock));
+    }
+
+    /**
+     * Lets the next path start while the stop event is still running, as soon as the interlock is true.
+     */
+    public void addTrailEvent(String name, BooleanSupplier driveInterlock) {
+        trailEvents.put(name, driveInterlock);
+    }
+
+    /**
+     * @param overlapStops false builds autos the way SwerveAutoBuilder does, stopped for every stop event
+     */
+    public void setOverlapStops(boolean overlapStops) {
+        this.overlapStops = overlapStops;
+    }
+
+    @Override
+    public CommandBase followPath(PathPlannerTrajectory trajectory) {
+        return new FeedForwardSwerveFollower(
+            trajectory,
+            poseSupplier,
+            kinematics,
+            translationConstants,
+            rotationConstants,
+            outputModuleStates,
+            useAllianceColor,
+            driveRequirements);
+    }
+
+    @Override
+    public CommandBase fullAuto(List<PathPlannerTrajectory> pathGroup) {
+        if (!overlapStops || (leadEvents.isEmpty() && trailEvents.isEmpty())) {
+            return super.fullAuto(pathGroup);
+        }
+
+        //Stop k is the one before path k, the last one is the group's end stop
+        int paths = pathGroup.size();
+        List<StopEvent> stops = new ArrayList<>();
+        for (PathPlannerTrajectory path : pathGroup) {
+            stops.add(path.getStartStopEvent());
+        }
+        stops.add(pathGroup.get(paths - 1).getEndStopEvent());
+
+        List<List<String>> lead = new ArrayList<>();
+        List<List<String>> trail = new ArrayList<>();
+        for (int k = 0; k <= paths; k++) {
+            List<String> leading = k > 0 ? leadNames(stops.get(k)) : List.of();
+            lead.add(leading);
+            trail.add(k < paths ? trailNames(stops.get(k), leading) : List.of());
+        }
+
+        List<CommandBase> segments = new ArrayList<>();
+        for (int i = 0; i < paths; i++) {
+            PathPlannerTrajectory path = pathGroup.get(i);
+            CommandBase follow = followPathWithEvents(path);
+
+            //Markers that move the superstructure can't share the path with an overlapped event
+            Set<Subsystem> laneRequirements = new HashSet<>();
+            for (String name : trail.get(i)) {
+                laneRequirements.addAll(eventMap.get(name).getRequirements());
+            }
+            for (String name : lead.get(i + 1)) {
+                laneRequirements.addAll(eventMap.get(name).getRequirements());
+            }
+            if (!Collections.disjoint(laneRequirements, follow.getRequirements())) {
+                trail.set(i, List.of());
+                lead.set(i + 1, List.of());
+            }
+
+            if (trail.get(i).isEmpty() && lead.get(i + 1).isEmpty()) {
+                segments.add(follow);
+            } else {
+                segments.add(overlappedSegment(path, follow, trail.get(i), lead.get(i + 1), stops.get(i + 1).executionBehavior));
+            }
+        }
+
+        List<CommandBase> commands = new ArrayList<>();
+        commands.add(resetPose(pathGroup.get(0)));
+        for (int i = 0; i < paths; i++) {
+            commands.add(stopEventGroup(remaining(stops.get(i), lead.get(i), trail.get(i))));
+            commands.add(segments.get(i));
+        }
+        commands.add(stopEventGroup(remaining(stops.get(paths), lead.get(paths), List.of())));
+        return Commands.sequence(commands.toArray(CommandBase[]::new));
+    }
+
+    /**
+     * Names at the front of the stop that can start before the robot gets there. Stops that wait
+     * before or around their events keep them.
+     */
+    private List<String> leadNames(StopEvent stop) {
+        List<String> names = new ArrayList<>();
+        if (stop.waitBehavior != WaitBehavior.NONE && stop.waitBehavior != WaitBehavior.AFTER) {
+            return names;
+        }
+        for (String name : stop.names) {
+            boolean canLead = leadEvents.containsKey(name) && eventMap.containsKey(name);
+            if (canLead && stop.executionBehavior != ExecutionBehavior.PARALLEL_DEADLINE) {
+                names.add(name);
+            } else if (stop.executionBehavior != ExecutionBehavior.PARALLEL) {
+                break; //sequential order has to hold
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Names at the end of the stop that can keep running once the robot leaves. Only stops that
+     * don't wait, anything after the events would be skipped otherwise.
+     */
+    private List<String> trailNames(StopEvent stop, List<String> leading) {
+        List<String> names = new ArrayList<>();
+        if (stop.waitBehavior != WaitBehavior.NONE || stop.executionBehavior == ExecutionBehavior.PARALLEL_DEADLINE) {
+            return names;
+        }
+        for (int i = stop.names.size() - 1; i >= 0; i--) {
+            String name = stop.names.get(i);
+            boolean canTrail = trailEvents.containsKey(name) && eventMap.containsKey(name) && !leading.contains(name);
+            if (canTrail) {
+                names.add(0, name);
+            } else if (stop.executionBehavior == ExecutionBehavior.SEQUENTIAL) {
+                break;
+            }
+        }
+        return names;
+    }
+
+    private static StopEvent remaining(StopEvent stop, List<String> lead, List<String> trail) {
+        if (lead.isEmpty() && trail.isEmpty()) {
+            return stop;
+        }
+        List<String> names = new ArrayList<>(stop.names);
+        names.removeAll(lead);
+        names.removeAll(trail);
+        return new StopEvent(names, stop.executionBehavior, stop.waitBehavior, stop.waitTime);
+    }
+
+    /**
+     * The path with its trailing and leading events alongside. The drive waits for the trail
+     * interlocks (or the trail events finishing), each lead event waits for its lead point and
+     * interlock (or the robot arriving). The segment ends once the drive and every event are done.
+     */
+    private CommandBase overlappedSegment(PathPlannerTrajectory path, CommandBase follow, List<String> trail, List<String> lead, ExecutionBehavior leadBehavior) {
+        SegmentClock clock = new SegmentClock();
+
+        List<BooleanSupplier> driveInterlocks = new ArrayList<>();
+        for (String name : trail) {
+            driveInterlocks.add(trailEvents.get(name));
+        }
+        CommandBase drive = Commands.sequence(
+            Commands.waitUntil(() -> clock.trailDone || allTrue(driveInterlocks)),
+            Commands.runOnce(clock::start),
+            follow,
+            Commands.runOnce(() -> clock.arrived = true));
+
+        List<CommandBase> trailCommands = new ArrayList<>();
+        for (String name : trail) {
+            trailCommands.add(wrap(eventMap.get(name)));
+        }
+        trailCommands.add(Commands.runOnce(() -> clock.trailDone = true));
+
+        List<CommandBase> leadCommands = new ArrayList<>();
+        for (String name : lead) {
+            LeadEvent event = leadEvents.get(name);
+            double startTime = leadStartTime(path, event);
+            leadCommands.add(Commands.sequence(
+                Commands.waitUntil(() -> clock.arrived || (clock.hasElapsed(startTime) && event.interlock.getAsBoolean())),
+                wrap(eventMap.get(name))));
+        }
+        CommandBase leading = leadBehavior == ExecutionBehavior.PARALLEL
+            ? Commands.parallel(leadCommands.toArray(CommandBase[]::new))
+            : Commands.sequence(leadCommands.toArray(CommandBase[]::new));
+
+        return Commands.sequence(
+            Commands.runOnce(clock::reset),
+            Commands.parallel(
+                drive,
+                Commands.sequence(Commands.sequence(trailCommands.toArray(CommandBase[]::new)), leading)));
+    }
+
+    /**
+     * @return seconds into the path the event may start
+     */
+    private static double leadStartTime(PathPlannerTrajectory path, LeadEvent event) {
+        double totalTime = path.getTotalTimeSeconds();
+        if (!Double.isNaN(event.seconds)) {
+            return Math.max(0, totalTime - event.seconds);
+        }
+
+        List<Trajectory.State> states = path.getStates();
+        double remaining = 0;
+        for (int i = states.size() - 1; i > 0; i--) {
+            remaining += states.get(i).poseMeters.getTranslation().getDistance(states.get(i - 1).poseMeters.getTranslation());
+            if (remaining >= event.meters) {
+                return states.get(i - 1).timeSeconds;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean allTrue(List<BooleanSupplier> interlocks) {
+        for (BooleanSupplier interlock : interlocks) {
+            if (!interlock.getAsBoolean()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Same wrapping stopEventGroup does, so event commands can be in more than one auto
+    private static CommandBase wrap(Command command) {
+        return new FunctionalCommand(
+            command::initialize,
+            command::execute,
+            command::end,
+            command::isFinished,
+            command.getRequirements().toArray(Subsystem[]::new));
+    }
+}
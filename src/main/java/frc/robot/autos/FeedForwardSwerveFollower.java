@@ -0,0 +1,152 @@
+package frc.robot.autos;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
+import com.pathplanner.lib.auto.PIDConstants;
+
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import frc.lib.util.AsyncLog;
+import frc.robot.Constants;
+
+/**
+ * Holonomic path follower that drives mostly on feed-forward. The velocity command is the path's
+ * velocity looked ahead by {@link Constants.AutoConstants#kFeedForwardLookahead} using the path's
+ * acceleration and curvature, which covers the lag between asking the modules for a speed and
+ * getting it. The lookahead stops at the path's end state and never asks for a negative speed, so
+ * the robot isn't driven past the end or backwards while decelerating. The PID controllers only
+ * take out what's left. Tracking error is written to the data log every loop and as an RMS per
+ * path when the path ends.
+ */
+public class FeedForwardSwerveFollower extends CommandBase {
+    private static DoubleLogEntry errorLog;
+    private static DoubleLogEntry rotationErrorLog;
+    private static DoubleLogEntry rmsLog;
+    private static DoubleLogEntry maxErrorLog;
+
+    private final PathPlannerTrajectory trajectory;
+    private final Supplier<Pose2d> poseSupplier;
+    private final SwerveDriveKinematics kinematics;
+    private final PIDController xController;
+    private final PIDController yController;
+    private final PIDController rotationController;
+    private final Consumer<SwerveModuleState[]> outputModuleStates;
+    private final boolean useAllianceColor;
+    private final Timer timer = new Timer();
+
+    private PathPlannerTrajectory transformedTrajectory;
+    private double squaredErrorSum;
+    private double maxError;
+    private int samples;
+
+    public FeedForwardSwerveFollower(
+            PathPlannerTrajectory trajectory,
+            Supplier<Pose2d> poseSupplier,
+            SwerveDriveKinematics kinematics,
+            PIDConstants translationConstants,
+            PIDConstants rotationConstants,
+            Consumer<SwerveModuleState[]> outputModuleStates,
+            boolean useAllianceColor,
+            Subsystem... requirements) {
+        this.trajectory = trajectory;
+        this.poseSupplier = poseSupplier;
+        this.kinematics = kinematics;
+        this.xController = new PIDController(translationConstants.kP, translationConstants.kI, translationConstants.kD, translationConstants.period);
+        this.yController = new PIDController(translationConstants.kP, translationConstants.kI, translationConstants.kD, translationConstants.period);
+        this.rotationController = new PIDController(rotationConstants.kP, rotationConstants.kI, rotationConstants.kD, rotationConstants.period);
+        this.rotationController.enableContinuousInput(-Math.PI, Math.PI);
+        this.outputModuleStates = outputModuleStates;
+        this.useAllianceColor = useAllianceColor;
+
+        if (errorLog == null) {
+            errorLog = new DoubleLogEntry(DataLogManager.getLog(), "/auto/trackingError");
+            rotationErrorLog = new DoubleLogEntry(DataLogManager.getLog(), "/auto/rotationErrorDeg");
+            rmsLog = new DoubleLogEntry(DataLogManager.getLog(), "/auto/pathRmsError");
+            maxErrorLog = new DoubleLogEntry(DataLogManager.getLog(), "/auto/pathMaxError");
+        }
+
+        addRequirements(requirements);
+    }
+
+    @Override
+    public void initialize() {
+        transformedTrajectory = useAllianceColor
+            ? PathPlannerTrajectory.transformTrajectoryForAlliance(trajectory, DriverStation.getAlliance())
+            : trajectory;
+
+        xController.reset();
+        yController.reset();
+        rotationController.reset();
+        squaredErrorSum = 0;
+        maxError = 0;
+        samples = 0;
+        timer.restart();
+    }
+
+    @Override
+    public void execute() {
+        double time = timer.get();
+        PathPlannerState desired = (PathPlannerState) transformedTrajectory.sample(time);
+        Pose2d pose = poseSupplier.get();
+
+        //Where the path's velocity will be by the time the modules get there, not past the end state
+        double lookahead = Math.max(0, Math.min(Constants.AutoConstants.kFeedForwardLookahead,
+            transformedTrajectory.getEndState().timeSeconds - time));
+        double velocity = Math.max(0, desired.velocityMetersPerSecond + desired.accelerationMetersPerSecondSq * lookahead);
+        //Heading turns by the curvature over the distance covered in the lookahead, never backwards
+        double distance = Math.max(0, (desired.velocityMetersPerSecond + velocity) / 2.0 * lookahead);
+        double heading = desired.poseMeters.getRotation().getRadians()
+            + desired.curvatureRadPerMeter * distance;
+
+        double xFF = velocity * Math.cos(heading);
+        double yFF = velocity * Math.sin(heading);
+        double rotationFF = desired.holonomicAngularVelocityRadPerSec;
+
+        double xFeedback = xController.calculate(pose.getX(), desired.poseMeters.getX());
+        double yFeedback = yController.calculate(pose.getY(), desired.poseMeters.getY());
+        double rotationFeedback = rotationController.calculate(pose.getRotation().getRadians(), desired.holonomicRotation.getRadians());
+
+        outputModuleStates.accept(kinematics.toSwerveModuleStates(ChassisSpeeds.fromFieldRelativeSpeeds(
+            xFF + xFeedback,
+            yFF + yFeedback,
+            rotationFF + rotationFeedback,
+            pose.getRotation())));
+
+        double error = pose.getTranslation().getDistance(desired.poseMeters.getTranslation());
+        squaredErrorSum += error * error;
+        maxError = Math.max(maxError, error);
+        samples++;
+        errorLog.append(error);
+        rotationErrorLog.append(pose.getRotation().minus(desired.holonomicRotation).getDegrees());
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        timer.stop();
+        outputModuleStates.accept(kinematics.toSwerveModuleStates(new ChassisSpeeds()));
+
+        if (samples > 0) {
+            double rms = Math.sqrt(squaredErrorSum / samples);
+            rmsLog.append(rms);
+            maxErrorLog.append(maxError);
+            AsyncLog.log("Path RMS tracking error (m): ", rms);
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return timer.hasElapsed(transformedTrajectory.getTotalTimeSeconds());
+    }
+}
@@ -0,0 +1,106 @@
+package frc.robot.autos;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPoint;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import frc.lib.util.TrajectoryService;
+import frc.robot.Constants.kGrid;
+
+/**
+ * Paths from anywhere in the community to a grid node, generated on the TrajectoryService worker.
+ * Start poses are bucketed into {@link kGrid#cellSize} cells and {@link kGrid#headingBucket}
+ * headings, every path starts from the center of its bucket and is kept, so the second request
+ * from the same spot is already done. The path follower corrects the few cm to the actual pose.
+ */
+public final class NodePathCache {
+    private NodePathCache() {}
+
+    /**
+     * @param pose current odometry pose
+     * @param node grid node, 0 (cable side) to 8 (substation side)
+     * @return the path, already complete if this start cell has been used before
+     */
+    public static CompletableFuture<PathPlannerTrajectory> get(Pose2d pose, int node) {
+        Alliance alliance = DriverStation.getAlliance();
+        boolean isRed = alliance == Alliance.Red;
+
+        //Work in blue coordinates, mirrored back at the end like the auto paths are
+        double x = pose.getX();
+        double y = isRed ? kGrid.fieldWidth - pose.getY() : pose.getY();
+        double heading = isRed ? -pose.getRotation().getDegrees() : pose.getRotation().getDegrees();
+
+        if (x > kGrid.communityMaxX) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Not in the community"));
+        }
+
+        int cellX = (int) Math.floor(x / kGrid.cellSize);
+        int cellY = (int) Math.floor(y / kGrid.cellSize);
+        int headingIndex = Math.floorMod((int) Math.round(heading / kGrid.headingBucket), (int) (360 / kGrid.headingBucket));
+
+        String key = "node/" + (isRed ? "red/" : "blue/") + cellX + "/" + cellY + "/" + headingIndex + "/" + node;
+        return TrajectoryService.submit(key, () -> {
+            Pose2d cellStart = new Pose2d(
+                (cellX + 0.5) * kGrid.cellSize,
+                (cellY + 0.5) * kGrid.cellSize,
+                Rotation2d.fromDegrees(headingIndex * kGrid.headingBucket));
+            PathPlannerTrajectory path = generate(cellStart, node);
+            if (isRed) {
+                path = PathPlannerTrajectory.transformTrajectoryForAlliance(path, Alliance.Red);
+            }
+            return path;
+        });
+    }
+
+    /** Straight to the node, or around the charge station through the nearest lane if it's in the way. */
+    private static PathPlannerTrajectory generate(Pose2d start, int node) {
+        Translation2d target = new Translation2d(kGrid.scoringX, kGrid.nodeY[node]);
+        Translation2d from = start.getTranslation();
+
+        boolean crossesStation = from.getX() > kGrid.stationMinX
+            && Math.max(from.getY(), target.getY()) > kGrid.stationMinY
+            && Math.min(from.getY(), target.getY()) < kGrid.stationMaxY
+            && !(from.getY() < kGrid.stationMinY && target.getY() < kGrid.stationMinY)
+            && !(from.getY() > kGrid.stationMaxY && target.getY() > kGrid.stationMaxY);
+
+        if (!crossesStation) {
+            return PathPlanner.generatePath(kGrid.constraints,
+                new PathPoint(from, heading(from, target), start.getRotation()),
+                new PathPoint(target, heading(from, target), kGrid.scoringRotation));
+        }
+
+        double laneY = Math.abs(from.getY() - kGrid.cableLaneY) + Math.abs(target.getY() - kGrid.cableLaneY)
+            < Math.abs(from.getY() - kGrid.substationLaneY) + Math.abs(target.getY() - kGrid.substationLaneY)
+            ? kGrid.cableLaneY : kGrid.substationLaneY;
+        Translation2d laneEntry = new Translation2d(Math.max(from.getX(), kGrid.stationMaxX), laneY);
+        Translation2d laneExit = new Translation2d(kGrid.stationMinX - 0.3, laneY);
+
+        //Already in the lane, skip the entry point rather than give the generator a zero length segment
+        if (from.getDistance(laneEntry) < kGrid.cellSize) {
+            return PathPlanner.generatePath(kGrid.constraints,
+                new PathPoint(from, heading(from, laneExit), start.getRotation()),
+                new PathPoint(laneExit, Rotation2d.fromDegrees(180), kGrid.scoringRotation),
+                new PathPoint(target, heading(laneExit, target), kGrid.scoringRotation));
+        }
+        return PathPlanner.generatePath(kGrid.constraints,
+            new PathPoint(from, heading(from, laneEntry), start.getRotation()),
+            new PathPoint(laneEntry, Rotation2d.fromDegrees(180), kGrid.scoringRotation),
+            new PathPoint(laneExit, Rotation2d.fromDegrees(180), kGrid.scoringRotation),
+            new PathPoint(target, heading(laneExit, target), kGrid.scoringRotation));
+    }
+
+    private static Rotation2d heading(Translation2d from, Translation2d to) {
+        Translation2d delta = to.minus(from);
+        if (delta.getNorm() < 1e-6) {
+            return Rotation2d.fromDegrees(180);
+        }
+        return delta.getAngle();
+    }
+}
@@ -0,0 +1,212 @@
+package frc.robot.autos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.pathplanner.lib.PathConstraints;
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.trajectory.Trajectory;
+import frc.robot.Constants;
+
+/**
+ * Re-times PathPlanner paths as fast as the drivetrain can actually follow them, instead of the
+ * hand picked PathConstraints. Keeps the path's geometry and finds the fastest speed along it with
+ * a forward (accelerate) and backward (brake) pass under:
+ * <ul>
+ * <li>wheel speed, including what the holonomic rotation along the path costs the outside wheel</li>
+ * <li>max angular velocity</li>
+ * <li>acceleration from the drive current limit, wheel friction and the measured kS / kV / kA</li>
+ * <li>a centripetal limit per path, tighter while a path carries a game piece</li>
+ * </ul>
+ * Spots where the robot only turns in place are timed at max angular velocity.
+ */
+public final class PathRetimer {
+    private static final double gravity = 9.81;
+
+    private PathRetimer() {}
+
+    public static final class Limits {
+        public final double maxWheelSpeed;
+        public final double maxAngularVelocity;
+        public final double maxAccel; //current limit / traction, m/s^2
+        public final double maxCentripetalAccel;
+        public final double moduleRadius;
+        //Drive characterization in percent output units, like Constants.kSwerve
+        public final double kS;
+        public final double kV;
+        public final double kA;
+
+        public Limits(double maxWheelSpeed, double maxAngularVelocity, double maxAccel, double maxCentripetalAccel,
+                double moduleRadius, double kS, double kV, double kA) {
+            this.maxWheelSpeed = maxWheelSpeed;
+            this.maxAngularVelocity = maxAngularVelocity;
+            this.maxAccel = maxAccel;
+            this.maxCentripetalAccel = maxCentripetalAccel;
+            this.moduleRadius = moduleRadius;
+            this.kS = kS;
+            this.kV = kV;
+            this.kA = kA;
+        }
+
+        /** Same limits with a different centripetal limit, for segments that need their own. */
+        public Limits withCentripetal(double maxCentripetalAccel) {
+            return new Limits(maxWheelSpeed, maxAngularVelocity, maxAccel, maxCentripetalAccel, moduleRadius, kS, kV, kA);
+        }
+
+        /** Acceleration available at a speed, the motors lose torque to back EMF as they speed up. */
+        double accel(double velocity) {
+            return Math.max(0, Math.min(maxAccel, (1 - kS - kV * velocity) / kA));
+        }
+
+        /** Braking has back EMF on its side. */
+        double decel(double velocity) {
+            return Math.min(maxAccel, (1 - kS + kV * velocity) / kA);
+        }
+    }
+
+    /** Limits from Constants.kSwerve: the drive continuous current limit on four Falcons. */
+    public static final Limits robotLimits = fromConstants();
+    /** robotLimits for paths that don't pick up or carry a game piece, they only have traction to keep. */
+    public static final Limits emptyLimits = robotLimits.withCentripetal(Constants.kSwerve.emptyCentripetalAccel);
+
+    private static Limits fromConstants() {
+        DCMotor falcon = DCMotor.getFalcon500(1);
+        double wheelRadius = Constants.kSwerve.chosenModule.wheelDiameter / 2;
+        double moduleForce = falcon.KtNMPerAmp * Constants.kSwerve.driveContinuousCurrentLimit * Constants.kSwerve.driveGearRatio / wheelRadius;
+        double currentAccel = 4 * moduleForce / Constants.kSwerve.robotMassKg;
+        double tractionAccel = Constants.kSwerve.wheelCoefficientOfFriction * gravity;
+
+        return new Limits(
+            Constants.kSwerve.maxSpeed,
+            Constants.kSwerve.maxAngularVelocity,
+            Math.min(currentAccel, tractionAccel),
+            Constants.kSwerve.maxCentripetalAccel,
+            Math.hypot(Constants.kSwerve.wheelBase / 2, Constants.kSwerve.trackWidth / 2),
+            Constants.kSwerve.driveKS,
+            Constants.kSwerve.driveKV,
+            Constants.kSwerve.driveKA);
+    }
+
+    public static final class Result {
+        public final double originalTime;
+        public final double optimalTime;
+        /** Path states with the new timing. Holonomic rotation isn't carried, WPILib states don't have it. */
+        public final Trajectory trajectory;
+        /** Closest single PathConstraints to the optimal timing, for dropping into loadPathGroup */
+        public final PathConstraints suggestedConstraints;
+
+        Result(double originalTime, double optimalTime, Trajectory trajectory, PathConstraints suggestedConstraints) {
+            this.originalTime = originalTime;
+            this.optimalTime = optimalTime;
+            this.trajectory = trajectory;
+            this.suggestedConstraints = suggestedConstraints;
+        }
+    }
+
+    public static Result retime(PathPlannerTrajectory path, Limits limits) {
+        List<Trajectory.State> states = path.getStates();
+        int n = states.size();
+        double[] ds = new double[n]; //distance from state i - 1 to i
+        double[] dTheta = new double[n];
+        double[] maxVelocity = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            PathPlannerState state = (PathPlannerState) states.get(i);
+            if (i > 0) {
+                PathPlannerState previous = (PathPlannerState) states.get(i - 1);
+                ds[i] = state.poseMeters.getTranslation().getDistance(previous.poseMeters.getTranslation());
+                dTheta[i] = Math.abs(state.holonomicRotation.minus(previous.holonomicRotation).getRadians());
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            //Rotation per meter around this state, looking at the segment ahead and behind
+            double length = ds[i] + (i + 1 < n ? ds[i + 1] : 0);
+            double turn = dTheta[i] + (i + 1 < n ? dTheta[i + 1] : 0);
+            double rotationPerMeter = length > 1e-6 ? turn / length : 0;
+            double curvature = Math.abs(((PathPlannerState) states.get(i)).curvatureRadPerMeter);
+
+            double limit = limits.maxWheelSpeed / (1 + rotationPerMeter * limits.moduleRadius);
+            if (rotationPerMeter > 1e-6) {
+                limit = Math.min(limit, limits.maxAngularVelocity / rotationPerMeter);
+            }
+            if (curvature > 1e-6) {
+                limit = Math.min(limit, Math.sqrt(limits.maxCentripetalAccel / curvature));
+            }
+            maxVelocity[i] = limit;
+        }
+
+        double[] velocity = new double[n];
+        velocity[0] = Math.min(maxVelocity[0], Math.abs(states.get(0).velocityMetersPerSecond));
+        for (int i = 1; i < n; i++) {
+            double reachable = Math.sqrt(velocity[i - 1] * velocity[i - 1] + 2 * limits.accel(velocity[i - 1]) * ds[i]);
+            velocity[i] = Math.min(maxVelocity[i], reachable);
+        }
+        velocity[n - 1] = Math.min(velocity[n - 1], Math.abs(states.get(n - 1).velocityMetersPerSecond));
+        for (int i = n - 2; i >= 0; i--) {
+            double reachable = Math.sqrt(velocity[i + 1] * velocity[i + 1] + 2 * limits.decel(velocity[i + 1]) * ds[i + 1]);
+            velocity[i] = Math.min(velocity[i], reachable);
+        }
+
+        List<Trajectory.State> retimed = new ArrayList<>(n);
+        double time = 0;
+        double peakVelocity = 0;
+        for (int i = 0; i < n; i++) {
+            double acceleration = 0;
+            if (i > 0) {
+                double dt;
+                if (ds[i] < 1e-6) {
+                    dt = dTheta[i] / limits.maxAngularVelocity; //turning in place
+                } else if (velocity[i] + velocity[i - 1] > 1e-6) {
+                    dt = 2 * ds[i] / (velocity[i] + velocity[i - 1]);
+                } else {
+                    dt = Math.sqrt(2 * ds[i] / limits.accel(0));
+                }
+                time += dt;
+                acceleration = dt > 0 ? (velocity[i] - velocity[i - 1]) / dt : 0;
+            }
+            peakVelocity = Math.max(peakVelocity, velocity[i]);
+
+            Trajectory.State state = states.get(i);
+            retimed.add(new Trajectory.State(time, velocity[i], acceleration, state.poseMeters, state.curvatureRadPerMeter));
+        }
+
+        return new Result(
+            path.getTotalTimeSeconds(),
+            time,
+            new Trajectory(retimed),
+            new PathConstraints(Math.max(peakVelocity, 0.1), limits.accel(0)));
+    }
+
+    /**
+     * Retimes every path of every auto under its own limits.
+     *
+     * @param limits per auto, the limits for each path of its group by index. Autos or paths
+     * without an entry use {@link #robotLimits}.
+     * @return one line per auto: current path time, fastest feasible path time and the saving.
+     * Time spent stopped at stop events is the same either way and left out.
+     */
+    public static List<String> report(Map<String, List<PathPlannerTrajectory>> autos, Map<String, List<Limits>> limits) {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-52s %9s %9s %9s  %s", "Auto", "Now (s)", "Best (s)", "Saved", "Suggested vel/accel per path"));
+        for (Map.Entry<String, List<PathPlannerTrajectory>> auto : autos.entrySet()) {
+            double original = 0;
+            double optimal = 0;
+            StringBuilder suggested = new StringBuilder();
+            List<Limits> pathLimits = limits.getOrDefault(auto.getKey(), List.of());
+            List<PathPlannerTrajectory> paths = auto.getValue();
+            for (int i = 0; i < paths.size(); i++) {
+                Result result = retime(paths.get(i), i < pathLimits.size() ? pathLimits.get(i) : robotLimits);
+                original += result.originalTime;
+                optimal += result.optimalTime;
+                suggested.append(String.format("(%.2f, %.2f) ", result.suggestedConstraints.maxVelocity, result.suggestedConstraints.maxAcceleration));
+            }
+            lines.add(String.format("%-52s %9.2f %9.2f %9.2f  %s", auto.getKey(), original, optimal, original - optimal, suggested));
+        }
+        return lines;
+    }
+}
@@ -4,6 +4,7 @@ import frc.robot.Constants;
 import frc.robot.subsystems.Swerve;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.ProfiledPIDController;
@@ -13,11 +14,25 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.trajectory.Trajectory;
 import edu.wpi.first.math.trajectory.TrajectoryConfig;
 import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
+import edu.wpi.first.wpilibj2.command.ProxyCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.SwerveControllerCommand;
+import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
+import frc.lib.util.AsyncLog;
 
 public class runPathAuto extends SequentialCommandGroup {
+    /**
+     * For paths from the TrajectoryService: waits for the path without blocking the loop, then runs it.
+     */
+    public static Command whenReady(Swerve s_Swerve, CompletableFuture<? extends Trajectory> path) {
+        return new WaitUntilCommand(path::isDone)
+            .andThen(new ProxyCommand(() -> path.isCompletedExceptionally()
+                ? new InstantCommand(() -> AsyncLog.log("runPathAuto: path failed to generate"))
+                : new runPathAuto(s_Swerve, path.join())));
+    }
+
     public runPathAuto(Swerve s_Swerve, Trajectory path) {
         TrajectoryConfig config = new TrajectoryConfig(
                 Constants.AutoConstants.kMaxSpeedMetersPerSecond,
@@ -6,6 +6,7 @@ package frc.robot.commands;
 
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.wpilibj2.command.PIDCommand;
+import frc.robot.Constants;
 import frc.robot.subsystems.Arm;
 import java.lang.Math;
 
@@ -13,6 +14,8 @@ import java.lang.Math;
 // information, see:
 // https://docs.wpilib.org/en/stable/docs/software/commandbased/convenience-features.html
 public class ArmToAnglePID extends PIDCommand {
+  private final Arm arm;
+
   /** Creates a new moveArmToAnglePID. */
   public ArmToAnglePID(Arm arm, double angle){
 
@@ -46,11 +49,13 @@ public class ArmToAnglePID extends PIDCommand {
     // Configure additional PID options by calling `getController` here.
 
       getController().setTolerance(5); //Roughly 3.5ish degrees
+      this.arm = arm;
   }
 
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return getController().atSetpoint();
+    //Keeps holding until the arm has settled, the lock shouldn't go in while it's still swinging
+    return getController().atSetpoint() && Math.abs(arm.getVelocity()) < Constants.kArm.settleVelocity;
   }
 }
@@ -0,0 +1,92 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntSupplier;
+
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.auto.PIDConstants;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.lib.util.AsyncLog;
+import frc.robot.Constants;
+import frc.robot.autos.FeedForwardSwerveFollower;
+import frc.robot.autos.NodePathCache;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Drives from wherever the robot is in the community to a grid node. The path comes from
+ * {@link NodePathCache}, the robot holds still for the loop or two it can take to generate and
+ * then follows it with the same gains as the autos.
+ */
+public class DriveToNodeCommand extends CommandBase {
+  private final Swerve swerve;
+  private final IntSupplier nodeSupplier;
+
+  private CompletableFuture<PathPlannerTrajectory> pendingPath;
+  private FeedForwardSwerveFollower follower;
+  private boolean hasFailed;
+
+  /**
+   * @param nodeSupplier grid node to score on, 0 (cable side) to 8 (substation side)
+   */
+  public DriveToNodeCommand(Swerve swerve, IntSupplier nodeSupplier) {
+    this.swerve = swerve;
+    this.nodeSupplier = nodeSupplier;
+
+    addRequirements(swerve);
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    follower = null;
+    hasFailed = false;
+    pendingPath = NodePathCache.get(swerve.getPose(), nodeSupplier.getAsInt());
+  }
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    if (follower == null) {
+      if (!pendingPath.isDone()) {
+        swerve.drive(new Translation2d(), 0, false, true);
+        return;
+      }
+      if (pendingPath.isCompletedExceptionally()) {
+        AsyncLog.log("DriveToNode: no path to node ", nodeSupplier.getAsInt());
+        hasFailed = true;
+        return;
+      }
+      follower = new FeedForwardSwerveFollower(
+          pendingPath.join(),
+          swerve::getPose,
+          Constants.kSwerve.swerveKinematics,
+          new PIDConstants(Constants.AutoConstants.kPXController, 0, 0),
+          new PIDConstants(Constants.AutoConstants.kPThetaController, 0, 0),
+          swerve::setModuleStates,
+          false); //NodePathCache already mirrored it for red
+      follower.initialize();
+    }
+    follower.execute();
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    if (follower != null) {
+      follower.end(interrupted);
+    }
+    swerve.drive(new Translation2d(), 0, false, true);
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return hasFailed || (follower != null && follower.isFinished());
+  }
+}
@@ -4,12 +4,17 @@
 
 package frc.robot.commands;
 
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants;
 import frc.robot.subsystems.Intake;
 
 public class IntakeTeleopCommand extends CommandBase {
   /** Creates a new IntakeTeleop. */
   private final Intake intake;
+  //Held until the piece has been gone for pieceLostTime, so one noisy loop doesn't restart the rollers
+  private boolean hasPiece = false;
+  private double lastSeen = 0;
   public IntakeTeleopCommand(Intake intake) {
     this.intake = intake;
     addRequirements(intake);
@@ -17,16 +22,28 @@ public class IntakeTeleopCommand extends CommandBase {
 
   // Called when the command is initially scheduled.
   @Override
-  public void initialize() {}
+  public void initialize() {
+    hasPiece = false;
+  }
 
   // Called every time the scheduler runs while the command is scheduled.
   @Override
   public void execute() {
-    if(!intake.limitIsEngaged()){
+    double now = Timer.getFPGATimestamp();
+    if(intake.isPieceAcquired()){
+      hasPiece = true;
+      lastSeen = now;
+    }
+    else if(now - lastSeen > Constants.kIntake.pieceLostTime){
+      hasPiece = false;
+    }
+
+    //Holding keeps the rollers loaded so the detector still sees the piece, if it slips out we intake again
+    if(!hasPiece){
       intake.setIntake(0.6);
     }
-    else if(intake.limitIsEngaged()){
-      intake.setIntake(0.0);
+    else {
+      intake.setIntake(Constants.kIntake.holdOutput);
     }
   }
   // Called once the command ends or is interrupted.
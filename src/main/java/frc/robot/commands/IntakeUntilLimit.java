@@ -39,6 +39,6 @@ public class IntakeUntilLimit extends CommandBase {
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return intake.limitIsEngaged();
+    return intake.isPieceAcquired();
   }
 }
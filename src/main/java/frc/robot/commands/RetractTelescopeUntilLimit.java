@@ -4,13 +4,23 @@
 
 package frc.robot.commands;
 
+import edu.wpi.first.math.filter.Debouncer;
 import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
 import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants;
 import frc.robot.subsystems.*;
 
 public class RetractTelescopeUntilLimit extends CommandBase {
   /** Creates a new RetractTelescopeUntilLimit. */
   private final Telescope telescope;
+
+  //True once the brake has let go and the profile was started
+  private boolean isProfileStarted = false;
+  //True once the profile is done and we are creeping onto the switch
+  private boolean isCreeping = false;
+  private boolean isStalled = false;
+  private Debouncer stallDebouncer;
+
   public RetractTelescopeUntilLimit(Telescope telescope) {
     this.telescope = telescope;
     // Use addRequirements() here to declare subsystem dependencies.
@@ -21,25 +31,56 @@ public class RetractTelescopeUntilLimit extends CommandBase {
   // Called when the command is initially scheduled.
   @Override
   public void initialize() {
+    isProfileStarted = false;
+    isCreeping = false;
+    isStalled = false;
+    stallDebouncer = new Debouncer(Constants.kTelescope.homingStallTime);
+
     telescope.setBrake(Value.kReverse);
-    telescope.setPercent(-1);
   }
 
   // Called every time the scheduler runs while the command is scheduled.
   @Override
-  public void execute() {}
+  public void execute() {
+    //Motion Magic starts once the brake has let go instead of driving against it
+    if(!isProfileStarted){
+      if(!telescope.isBrakeReady()){
+        return;
+      }
+      isProfileStarted = true;
+      //Fast Motion Magic profile down to the slow zone, it decelerates on its own before the switch
+      telescope.setLength(Constants.kTelescope.slowZoneCm);
+    }
+
+    //Creep once the profile has finished slowing down, not while it's still commanding the carriage in
+    if(!isCreeping && telescope.getLength() <= Constants.kTelescope.slowZoneCm + 0.5
+        && Math.abs(telescope.getProfileVelocity()) < Constants.kTelescope.homingStallVelocity){
+      isCreeping = true;
+      telescope.setReverseSoftLimit(false);
+      telescope.setPercent(Constants.kTelescope.retractCreepPercent);
+    }
+
+    //Velocity based homing: creeping but not moving means we're on the hard stop and the switch missed it.
+    //Only counted once nothing but the creep is commanded, a decelerating profile is slow on purpose
+    if(isCreeping && telescope.getProfileVelocity() == 0){
+      isStalled = stallDebouncer.calculate(Math.abs(telescope.getVelocity()) < Constants.kTelescope.homingStallVelocity);
+    }
+  }
 
   // Called once the command ends or is interrupted.
   @Override
   public void end(boolean interrupted) {
-    System.out.println("T");
     telescope.setPercent(0.0);
     telescope.setBrake(Value.kForward);
+    if(isStalled && !telescope.isLimitEngaged()){
+      telescope.setEncoder(0);
+    }
+    telescope.setReverseSoftLimit(true);
   }
 
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return telescope.isLimitEngaged();
+    return telescope.isLimitEngaged() || isStalled;
   }
 }
@@ -1,22 +1,56 @@
 package frc.robot.commands;
 
+import frc.lib.util.AxisShaper;
+import frc.lib.util.StickShaper;
+import frc.lib.util.TargetBearingFilter;
 import frc.robot.Constants;
+import frc.robot.Constants.kAim;
+import frc.robot.Constants.kInput;
 import frc.robot.subsystems.Swerve;
+import frc.robot.subsystems.VisionSubsystem.Frame;
 
 import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
 
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 
 
-public class TeleopSwerve extends CommandBase {    
-    private Swerve s_Swerve;    
+public class TeleopSwerve extends CommandBase {
+    private Swerve s_Swerve;
     private DoubleSupplier translationSup;
     private DoubleSupplier strafeSup;
     private DoubleSupplier rotationSup;
     private BooleanSupplier robotCentricSup;
+    private BooleanSupplier precisionSup = () -> false;
+
+    /* Input shaping, see Constants.kInput */
+    private final StickShaper translationShaper = new StickShaper()
+        .deadband(kInput.translationDeadband)
+        .exponent(kInput.translationExponent)
+        .slew(kInput.translationAccel, kInput.translationDecel)
+        .precision(kInput.translationPrecision);
+    private final AxisShaper rotationShaper = new AxisShaper()
+        .deadband(kInput.rotationDeadband)
+        .exponent(kInput.rotationExponent)
+        .slew(kInput.rotationAccel, kInput.rotationDecel)
+        .precision(kInput.rotationPrecision);
+
+    /* Aim assist */
+    private BooleanSupplier aimSup = () -> false;
+    private Supplier<Frame> targetSup = () -> Frame.none;
+    private final ProfiledPIDController aimController = new ProfiledPIDController(
+        kAim.kP, 0, kAim.kD, new TrapezoidProfile.Constraints(kAim.maxAngularVelocity, kAim.maxAngularAccel));
+    private final TargetBearingFilter bearingFilter = new TargetBearingFilter(kAim.txStdDev, kAim.bearingProcessStdDev);
+    private boolean aiming = false;
+    private double holdHeading = 0;
+    private long lastSequence = 0; //Tracked every loop so a frame from before aiming isn't taken as new
+    private double lastFrameTime = 0; //Capture time of the last frame fused
 
     public TeleopSwerve(Swerve s_Swerve, DoubleSupplier translationSup, DoubleSupplier strafeSup, DoubleSupplier rotationSup, BooleanSupplier robotCentricSup) {
         this.s_Swerve = s_Swerve;
@@ -26,21 +60,109 @@ public class TeleopSwerve extends CommandBase {
         this.strafeSup = strafeSup;
         this.rotationSup = rotationSup;
         this.robotCentricSup = robotCentricSup;
+
+        aimController.enableContinuousInput(-Math.PI, Math.PI);
+    }
+
+    /**
+     * With aim assist: while aimSup is held the heading controller points the robot at the vision
+     * target instead of the rotation stick, translation stays with the driver.
+     */
+    public TeleopSwerve(Swerve s_Swerve, DoubleSupplier translationSup, DoubleSupplier strafeSup, DoubleSupplier rotationSup, BooleanSupplier robotCentricSup,
+            BooleanSupplier aimSup, Supplier<Frame> targetSup) {
+        this(s_Swerve, translationSup, strafeSup, rotationSup, robotCentricSup);
+        this.aimSup = aimSup;
+        this.targetSup = targetSup;
+    }
+
+    /**
+     * With aim assist and precision mode: while precisionSup is held the sticks are scaled down
+     * for lining up.
+     */
+    public TeleopSwerve(Swerve s_Swerve, DoubleSupplier translationSup, DoubleSupplier strafeSup, DoubleSupplier rotationSup, BooleanSupplier robotCentricSup,
+            BooleanSupplier aimSup, Supplier<Frame> targetSup, BooleanSupplier precisionSup) {
+        this(s_Swerve, translationSup, strafeSup, rotationSup, robotCentricSup, aimSup, targetSup);
+        this.precisionSup = precisionSup;
+    }
+
+    @Override
+    public void initialize() {
+        translationShaper.reset();
+        rotationShaper.reset(0);
+        lastSequence = targetSup.get().sequence;
     }
 
     @Override
     public void execute() {
-        /* Get Values, Deadband*/
-        double translationVal = MathUtil.applyDeadband(translationSup.getAsDouble(), Constants.stickDeadband);
-        double strafeVal = MathUtil.applyDeadband(strafeSup.getAsDouble(), Constants.stickDeadband);
-        double rotationVal = MathUtil.applyDeadband(rotationSup.getAsDouble(), Constants.stickDeadband);
+        /* Get Values, Shape */
+        boolean precision = precisionSup.getAsBoolean();
+        translationShaper.calculate(translationSup.getAsDouble(), strafeSup.getAsDouble(), precision);
+        double translationVal = translationShaper.getX();
+        double strafeVal = translationShaper.getY();
+        double rotationVal = rotationShaper.calculate(rotationSup.getAsDouble(), precision);
+
+        double now = Timer.getFPGATimestamp();
+        double heading = s_Swerve.getYaw().getRadians();
+        bearingFilter.recordHeading(now, heading);
+
+        Frame frame = targetSup.get();
+        boolean newFrame = frame.sequence != lastSequence;
+        lastSequence = frame.sequence;
+
+        double rotation = rotationVal * Constants.kSwerve.maxAngularVelocity;
+        if (aimSup.getAsBoolean()) {
+            rotation = aim(now, heading, newFrame ? frame : null);
+        } else {
+            aiming = false;
+        }
 
         /* Drive */
         s_Swerve.drive(
-            new Translation2d(translationVal, strafeVal).times(Constants.kSwerve.maxSpeed), 
-            rotationVal * Constants.kSwerve.maxAngularVelocity, 
-            !robotCentricSup.getAsBoolean(), 
+            new Translation2d(translationVal, strafeVal).times(Constants.kSwerve.maxSpeed),
+            rotation,
+            !robotCentricSup.getAsBoolean(),
             true
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * @param frame the frame if it came in since the last loop, otherwise null
+     * @return rad/s towards the filtered target bearing, or holding the heading from the button
+     * press until there's a target
+     */
+    private double aim(double now, double heading, Frame frame) {
+        if (!aiming) {
+            aiming = true;
+            bearingFilter.clear();
+            holdHeading = heading;
+            aimController.reset(heading, Math.toRadians(s_Swerve.getYawRate()));
+        }
+
+        //Staleness goes by when the frame was captured, a late frame doesn't keep the target alive
+        if (frame != null && frame.hasTarget && now - frame.timestamp <= kAim.targetLostTime) {
+            bearingFilter.addMeasurement(frame.timestamp, Math.toRadians(frame.tx), now);
+            lastFrameTime = frame.timestamp;
+        }
+        if (bearingFilter.hasEstimate() && now - lastFrameTime > kAim.targetLostTime) {
+            bearingFilter.clear();
+            holdHeading = heading;
+        }
+        bearingFilter.predict(now);
+
+        double output;
+        if (bearingFilter.hasEstimate()) {
+            output = aimController.calculate(heading, new TrapezoidProfile.State(bearingFilter.getBearing(), bearingFilter.getRate()));
+        } else {
+            output = aimController.calculate(heading, holdHeading);
+        }
+        return output + aimController.getSetpoint().velocity;
+    }
+
+    /**
+     * @return true while aiming at a target and the heading is within tolerance of it
+     */
+    public boolean isAimed(double toleranceRadians) {
+        return aiming && bearingFilter.hasEstimate()
+            && Math.abs(MathUtil.angleModulus(bearingFilter.getBearing() - s_Swerve.getYaw().getRadians())) < toleranceRadians;
+    }
+}
@@ -43,7 +43,8 @@ public class WristPercentCommand extends CommandBase {
       s_Wrist.setHoldPosition(s_Wrist.getWristEncoder());
     }
     else {
-      s_Wrist.setSpeed(0.000018 * (s_Wrist.getHoldPosition() - s_Wrist.getWristEncoder()) - 0.05);
+      //Talon holds it, only sends a new setpoint when holdPosition changes
+      s_Wrist.holdPosition(s_Wrist.getHoldPosition());
     }
     
   }
@@ -0,0 +1,42 @@
+package frc.robot.commands;
+
+import frc.robot.Constants;
+import frc.robot.subsystems.Swerve;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj2.command.CommandBase;
+
+/**
+ * Points the wheels into an X with the drive motors stopped so the robot is hard to push.
+ * The angle targets are set once, the Talons hold them. Ends as soon as any of the sticks
+ * leaves the deadband, so the default drive command takes over without a button release.
+ */
+public class XStanceCommand extends CommandBase {
+    private Swerve s_Swerve;
+    private DoubleSupplier[] releaseSups;
+
+    /**
+     * @param releaseSups driver axes, moving any of them out of the deadband releases the stance
+     */
+    public XStanceCommand(Swerve s_Swerve, DoubleSupplier... releaseSups) {
+        this.s_Swerve = s_Swerve;
+        this.releaseSups = releaseSups;
+        addRequirements(s_Swerve);
+    }
+
+    @Override
+    public void initialize() {
+        s_Swerve.lockModulesInX();
+    }
+
+    @Override
+    public boolean isFinished() {
+        for (DoubleSupplier sup : releaseSups) {
+            if (Math.abs(sup.getAsDouble()) > Constants.stickDeadband) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -6,7 +6,7 @@ package frc.robot.commands.groups;
 
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
-import edu.wpi.first.wpilibj2.command.WaitCommand;
+import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
 import frc.robot.subsystems.Arm;
 import frc.robot.commands.*;
 
@@ -23,10 +23,11 @@ public class ArmToAngleGroup extends SequentialCommandGroup {
     // addCommands(new FooCommand(), new BarCommand());
     addCommands(
       new InstantCommand(arm::unlockArm),
-      new ArmToAnglePID(arm, angle).withTimeout(2.4),
+      new WaitUntilCommand(arm::isLockReady), //don't drive the arm against the lock
+      new ArmToAnglePID(arm, angle).withTimeout(2.4), //ends at the angle once settled
       new InstantCommand(() -> arm.setMotors(0)),
-      new WaitCommand(0.2),
-      new InstantCommand(arm::lockArm)
+      new InstantCommand(arm::lockArm),
+      new WaitUntilCommand(arm::isLockReady) //predicted from tank pressure, was a fixed 0.2s
     ); 
   }
 }
@@ -11,6 +11,7 @@ import edu.wpi.first.wpilibj2.command.ParallelRaceGroup;
 import edu.wpi.first.wpilibj2.command.RunCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
+import frc.robot.commands.RetractTelescopeUntilLimit;
 import frc.robot.subsystems.Arm;
 import frc.robot.subsystems.Intake;
 import frc.robot.subsystems.Telescope;
@@ -28,7 +29,7 @@ public class IntakeOutCommandGroup extends SequentialCommandGroup {
         new ArmToAngleGroup(arm, 62),
 
         wrist.moveWristToPosition_Command(-1000).withTimeout(1),
-        telescope.extendArmToDistance_Command(-1000).withTimeout(1)
+        new RetractTelescopeUntilLimit(telescope).withTimeout(1)
       ).withTimeout(1.25),
 
       //2. 
@@ -8,6 +8,7 @@ import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
 import edu.wpi.first.wpilibj2.command.ParallelCommandGroup;
 import edu.wpi.first.wpilibj2.command.RunCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
+import frc.robot.commands.RetractTelescopeUntilLimit;
 import frc.robot.subsystems.Arm;
 import frc.robot.subsystems.Intake;
 import frc.robot.subsystems.Telescope;
@@ -24,7 +25,8 @@ public class IntakeStandingCommandGroup extends SequentialCommandGroup {
     addCommands(
       new ParallelCommandGroup(
         wrist.moveWristToPosition_Command(-1000).withTimeout(0.25),
-        telescope.extendArmToDistance_Command(-1000).withTimeout(.25),
+        //Ends on the switch or stall, the brake alone takes most of a quarter second to let go
+        new RetractTelescopeUntilLimit(telescope),
         new ArmToAngleGroup(arm, 120.5)
       ).withTimeout(2),
 
@@ -7,6 +7,7 @@ package frc.robot.commands.groups;
 import edu.wpi.first.wpilibj.DoubleSolenoid;
 import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
 import edu.wpi.first.wpilibj2.command.*;
+import frc.lib.util.AsyncLog;
 import frc.robot.commands.CloseIntakeCommand;
 import frc.robot.commands.RetractTelescopeUntilLimit;
 import frc.robot.commands.RetractWristUntilLimit;
@@ -39,7 +40,7 @@ public class SetPositionsCommandGroup extends SequentialCommandGroup {
  
     addCommands(
   //1. Arm to Angle 
-      new ArmToAngleGroup(arm, armEncoder).andThen(new PrintCommand("Finished 1")),
+      new ArmToAngleGroup(arm, armEncoder).andThen(new InstantCommand(() -> AsyncLog.log("Finished 1"))),
 
   //2. Telescope to Extenstion & wrist to position
       new ParallelCommandGroup(
@@ -49,10 +50,10 @@ public class SetPositionsCommandGroup extends SequentialCommandGroup {
         wrist.moveWristToPosition_Command(wristEncoder).until(
           () -> wrist.getWristEncoder() > wristEncoder -600 && wrist.getWristEncoder() < wristEncoder + 600
         ).withTimeout(1.6) //was 2.0
-      ).withTimeout(2.2).andThen(new PrintCommand("Finished 2")), //was 2.5
+      ).withTimeout(2.2).andThen(new InstantCommand(() -> AsyncLog.log("Finished 2"))), //was 2.5
 
   //3. Wrist Holds positions
-      new InstantCommand(() -> wrist.setHoldPosition(wristEncoder)).andThen(new PrintCommand("Finished 3")),
+      new InstantCommand(() -> wrist.setHoldPosition(wristEncoder)).andThen(new InstantCommand(() -> AsyncLog.log("Finished 3"))),
 
   //4. Auto 
       (isAuto) ? 
@@ -0,0 +1,35 @@
+package frc.robot.sim;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.CTREConfigs;
+import frc.robot.Robot;
+import frc.robot.RobotContainer;
+import frc.robot.autos.PathRetimer;
+
+/**
+ * Prints how much faster each chooser auto's paths could run under the drivetrain's real limits
+ * (see {@link PathRetimer}). Builds the RobotContainer so it sees the same paths and constraints
+ * the robot loads. On the robot the same report is behind the "Path Retime Report" dashboard button.
+ *
+ * <p>Run with {@code ./gradlew retimeReport}.
+ */
+public final class RetimeReport {
+    private RetimeReport() {}
+
+    public static void main(String[] args) {
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Failed to initialize the HAL");
+        }
+
+        Robot.ctreConfigs = new CTREConfigs();
+        RobotContainer container = new RobotContainer();
+
+        System.out.println();
+        for (String line : PathRetimer.report(container.getLoadedAutoPaths(), container.getAutoLimits())) {
+            System.out.println(line);
+        }
+
+        HAL.shutdown();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,120 @@
+package frc.robot.sim;
+
+import edu.wpi.first.wpilibj.simulation.BatterySim;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.kBalance;
+import frc.robot.autos.ChargeStationModel;
+
+/**
+ * Robot-wide simulation state the mechanism sims share: battery load, air pressure and the blue
+ * charge station the robot may be driving on.
+ * Subsystems report their current draw and solenoid actuations from simulationPeriodic(),
+ * {@link frc.robot.Robot#simulationPeriodic()} then calls {@link #update(double)} once per loop.
+ * Everything steps on the loop period, not wall time, so it runs as fast as the loop is stepped.
+ */
+public final class RobotSim {
+    /* Pneumatics, psi */
+    private static final double maxPressure = 120;
+    private static final double compressorOnPressure = 100;
+    private static final double compressorRate = 1.5; //psi per second
+    private static final double actuationCost = 2.5; //psi per double solenoid throw
+    private static final double compressorCurrent = 10;
+
+    private static double pressure = maxPressure;
+    private static boolean compressorOn = false;
+    private static boolean compressorEnabled = true;
+    private static double onPressure = compressorOnPressure;
+    private static double offPressure = maxPressure;
+    private static double loopCurrent = 0;
+    private static double lastLoopCurrent = 0;
+
+    /* Charge station, the Pigeon sim only does yaw so this supplies the tilt */
+    private static final ChargeStationModel chargeStation = new ChargeStationModel();
+    private static boolean isOnChargeStation = false;
+
+    private RobotSim() {}
+
+    /** Adds to this loop's battery load. */
+    public static void addCurrent(double amps) {
+        loopCurrent += Math.abs(amps);
+    }
+
+    /** Call whenever a simulated double solenoid changes state. */
+    public static void onSolenoidActuation() {
+        pressure = Math.max(0, pressure - actuationCost);
+    }
+
+    public static double getPressure() {
+        return pressure;
+    }
+
+    public static boolean isCompressorOn() {
+        return compressorOn;
+    }
+
+    /**
+     * What the pneumatics hub was told, like REV PH analog mode: on below onPressure, off at offPressure.
+     */
+    public static void setCompressorControl(boolean enabled, double onPressure, double offPressure) {
+        compressorEnabled = enabled;
+        RobotSim.onPressure = onPressure;
+        RobotSim.offPressure = offPressure;
+    }
+
+    /**
+     * Steps the charge station with the robot where odometry says it is, call once per loop.
+     */
+    public static void updateChargeStation(double robotX, double dtSeconds) {
+        double offset = robotX - kBalance.stationCenterX;
+        isOnChargeStation = Math.abs(offset) < kBalance.stationHalfLength;
+        chargeStation.update(isOnChargeStation ? offset : Double.NaN, dtSeconds);
+        SmartDashboard.putNumber("Sim: Charge Station Angle", getChargeStationAngle());
+    }
+
+    /** Level and still with nothing on it. */
+    public static void resetChargeStation() {
+        chargeStation.reset();
+        isOnChargeStation = false;
+    }
+
+    /**
+     * @return the roll the robot's gyro would read in degrees, zero when the robot isn't on the station
+     */
+    public static double getRoll() {
+        return isOnChargeStation ? Math.toDegrees(chargeStation.getAngle()) : 0.0;
+    }
+
+    /** Degrees per second, zero when the robot isn't on the station */
+    public static double getRollRate() {
+        return isOnChargeStation ? Math.toDegrees(chargeStation.getVelocity()) : 0.0;
+    }
+
+    /** Platform angle in degrees whether or not the robot is on it */
+    public static double getChargeStationAngle() {
+        return Math.toDegrees(chargeStation.getAngle());
+    }
+
+    /** Total current of the last {@link #update(double)}, amps. */
+    public static double getLastLoopCurrent() {
+        return lastLoopCurrent;
+    }
+
+    public static void update(double dtSeconds) {
+        if (!compressorEnabled || pressure >= Math.min(offPressure, maxPressure)) {
+            compressorOn = false;
+        } else if (pressure < onPressure) {
+            compressorOn = true;
+        }
+        if (compressorOn) {
+            pressure = Math.min(maxPressure, pressure + compressorRate * dtSeconds);
+            loopCurrent += compressorCurrent;
+        }
+
+        RoboRioSim.setVInVoltage(BatterySim.calculateDefaultBatteryLoadedVoltage(loopCurrent));
+        SmartDashboard.putNumber("Sim: Pressure", pressure);
+        SmartDashboard.putNumber("Sim: Current Draw", loopCurrent);
+        lastLoopCurrent = loopCurrent;
+        loopCurrent = 0;
+    }
+}
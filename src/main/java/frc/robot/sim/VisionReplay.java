@@ -0,0 +1,246 @@
+package frc.robot.sim;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import frc.robot.AprilTagPoseSolver;
+import frc.robot.Constants;
+import frc.robot.LimelightHelpers.LimelightTarget_Fiducial;
+import frc.robot.LimelightHelpers.Results;
+import frc.robot.subsystems.Swerve;
+import frc.robot.subsystems.VisionSubsystem;
+import frc.robot.subsystems.VisionSubsystem.Frame;
+
+/**
+ * Replays a match or practice log's odometry and recorded Limelight frames through the pose
+ * estimator with different vision std devs, so they can be tuned at a desk. Frames are re-parsed
+ * from the logged json and go through the same filtering as on the robot, at the time the robot
+ * received them. For each std dev pair it prints:
+ * <ul>
+ * <li>innovation: how far each used vision pose was from the estimate, RMS</li>
+ * <li>correction: how fast vision moved the estimate away from pure odometry, m/s on average and
+ * the largest single loop jump</li>
+ * </ul>
+ * Lower innovation with a small correction rate is the estimator agreeing with vision without
+ * being yanked around by it.
+ *
+ * <p>Run with {@code ./gradlew visionReplay -Plog=path/to/FRC_xxx.wpilog [-Pxy=0.1,0.3] [-Ptheta=5,10] [-PrioSolver] [-Pred]},
+ * {@code -Pred} for a log from the red alliance so the poses are in the red origin like the robot's were.
+ */
+public final class VisionReplay {
+    private static final double[] defaultXy = {0.1, 0.2, 0.3, 0.5, 1.0};
+    private static final double[] defaultTheta = {5, 10, 20, 40};
+
+    private VisionReplay() {}
+
+    private static final class OdometrySample {
+        final double time;
+        final Rotation2d yaw;
+        final SwerveModulePosition[] positions = new SwerveModulePosition[4];
+
+        OdometrySample(double time, double[] record) {
+            this.time = time;
+            this.yaw = Rotation2d.fromDegrees(record[0]);
+            for (int i = 0; i < 4; i++) {
+                positions[i] = new SwerveModulePosition(record[1 + 2 * i], Rotation2d.fromDegrees(record[2 + 2 * i]));
+            }
+        }
+    }
+
+    private static final class RecordedFrame {
+        final double arrival;
+        final int camera;
+        final String json;
+        double captureTime = Double.NaN;
+
+        RecordedFrame(double arrival, int camera, String json) {
+            this.arrival = arrival;
+            this.camera = camera;
+            this.json = json;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String logFile = null;
+        double[] xyValues = defaultXy;
+        double[] thetaValues = defaultTheta;
+        boolean rioSolver = false;
+        Alliance alliance = Alliance.Blue;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--xy") && i + 1 < args.length) {
+                xyValues = parseList(args[++i]);
+            } else if (args[i].equals("--theta") && i + 1 < args.length) {
+                thetaValues = parseList(args[++i]);
+            } else if (args[i].equals("--rio-solver")) {
+                rioSolver = true;
+            } else if (args[i].equals("--red")) {
+                alliance = Alliance.Red;
+            } else if (!args[i].isBlank()) {
+                logFile = args[i];
+            }
+        }
+        if (logFile == null) {
+            System.err.println("Usage: VisionReplay <log.wpilog> [--xy a,b] [--theta a,b] [--rio-solver] [--red]");
+            System.exit(2);
+        }
+
+        List<OdometrySample> odometry = new ArrayList<>();
+        List<RecordedFrame> frames = new ArrayList<>();
+        Pose2d startPose = read(logFile, odometry, frames);
+        if (odometry.isEmpty()) {
+            System.err.println("No " + Swerve.odometryEntry + " records in " + logFile);
+            System.exit(1);
+        }
+        System.out.println(String.format("%d odometry samples, %d vision frames over %.1f s",
+            odometry.size(), frames.size(), odometry.get(odometry.size() - 1).time - odometry.get(0).time));
+
+        System.out.println(String.format("%8s %8s %6s %15s %16s %14s", "xy (m)", "theta", "Used", "Innovation (m)", "Correction (m/s)", "Max jump (m)"));
+        for (double xy : xyValues) {
+            for (double theta : thetaValues) {
+                System.out.println(replay(odometry, frames, startPose, xy, theta, rioSolver, alliance));
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * @return the first logged pose estimate, where the replay starts
+     */
+    private static Pose2d read(String logFile, List<OdometrySample> odometry, List<RecordedFrame> frames) throws IOException {
+        DataLogReader reader = new DataLogReader(logFile);
+        if (!reader.isValid()) {
+            throw new IOException("Not a wpilog: " + logFile);
+        }
+
+        Map<Integer, String> names = new HashMap<>();
+        Map<Integer, List<RecordedFrame>> pendingCapture = new HashMap<>();
+        Pose2d startPose = null;
+        for (DataLogRecord record : reader) {
+            if (record.isStart()) {
+                names.put(record.getStartData().entry, record.getStartData().name);
+                continue;
+            }
+            if (record.isControl()) {
+                continue;
+            }
+            String name = names.get(record.getEntry());
+            if (name == null) {
+                continue;
+            }
+            double time = record.getTimestamp() * 1e-6;
+
+            if (name.equals(Swerve.odometryEntry)) {
+                odometry.add(new OdometrySample(time, record.getDoubleArray()));
+            } else if (name.equals(Swerve.poseEntry) && startPose == null) {
+                double[] pose = record.getDoubleArray();
+                startPose = new Pose2d(pose[0], pose[1], Rotation2d.fromDegrees(pose[2]));
+            } else {
+                //json and frame records are written in pairs, in order, per camera
+                for (int camera = 0; camera < Constants.kVision.cameras.length; camera++) {
+                    String cameraName = Constants.kVision.cameras[camera];
+                    if (name.equals(VisionSubsystem.jsonEntry(cameraName))) {
+                        RecordedFrame frame = new RecordedFrame(time, camera, record.getString());
+                        frames.add(frame);
+                        pendingCapture.computeIfAbsent(camera, c -> new ArrayList<>()).add(frame);
+                    } else if (name.equals(VisionSubsystem.frameEntry(cameraName))) {
+                        List<RecordedFrame> pending = pendingCapture.get(camera);
+                        if (pending != null && !pending.isEmpty()) {
+                            pending.remove(0).captureTime = record.getDoubleArray()[0];
+                        }
+                    }
+                }
+            }
+        }
+        frames.removeIf(frame -> Double.isNaN(frame.captureTime));
+        frames.sort((a, b) -> Double.compare(a.arrival, b.arrival));
+        return startPose != null ? startPose : new Pose2d();
+    }
+
+    private static String replay(List<OdometrySample> odometry, List<RecordedFrame> frames, Pose2d startPose,
+            double xyStdDev, double thetaStdDev, boolean rioSolver, Alliance alliance) {
+        OdometrySample first = odometry.get(0);
+        SwerveDrivePoseEstimator estimator = new SwerveDrivePoseEstimator(
+            Constants.kSwerve.swerveKinematics, first.yaw, first.positions, startPose);
+        SwerveDriveOdometry wheelsOnly = new SwerveDriveOdometry(
+            Constants.kSwerve.swerveKinematics, first.yaw, first.positions, startPose);
+
+        AprilTagPoseSolver[] solvers = new AprilTagPoseSolver[Constants.kVision.cameras.length];
+        if (rioSolver) {
+            for (int i = 0; i < solvers.length; i++) {
+                solvers[i] = new AprilTagPoseSolver(i);
+            }
+        }
+
+        int frameIndex = 0;
+        int used = 0;
+        long sequence = 0;
+        double squaredInnovation = 0;
+        double correction = 0;
+        double maxJump = 0;
+        Pose2d lastEstimate = startPose;
+        Pose2d lastOdometry = startPose;
+
+        for (OdometrySample sample : odometry) {
+            while (frameIndex < frames.size() && frames.get(frameIndex).arrival <= sample.time) {
+                RecordedFrame recorded = frames.get(frameIndex++);
+                Results results = VisionSubsystem.parseResults(recorded.json);
+                if (results == null) {
+                    continue;
+                }
+                AprilTagPoseSolver solver = solvers[recorded.camera];
+                if (solver != null) {
+                    solver.begin(estimator.getEstimatedPosition().getRotation().getRadians(), alliance);
+                    for (LimelightTarget_Fiducial tag : results.targets_Fiducials) {
+                        solver.addTag(tag);
+                    }
+                    solver.solve();
+                }
+                Frame frame = new Frame(++sequence, recorded.captureTime, results, solver, alliance);
+
+                //Until vision has been used once it's allowed to move the pose anywhere, like disabled on the robot
+                Pose2d estimate = estimator.getEstimatedPosition();
+                if (VisionSubsystem.isUsable(frame, estimate, used > 0)) {
+                    double innovation = frame.botPose.getTranslation().getDistance(estimate.getTranslation());
+                    squaredInnovation += innovation * innovation;
+                    used++;
+                    estimator.addVisionMeasurement(frame.botPose, frame.timestamp,
+                        VisionSubsystem.stdDevs(frame, xyStdDev, thetaStdDev));
+                }
+            }
+
+            Pose2d estimate = estimator.updateWithTime(sample.time, sample.yaw, sample.positions);
+            Pose2d wheels = wheelsOnly.update(sample.yaw, sample.positions);
+
+            Translation2d jump = estimate.getTranslation().minus(lastEstimate.getTranslation())
+                .minus(wheels.getTranslation().minus(lastOdometry.getTranslation()));
+            correction += jump.getNorm();
+            maxJump = Math.max(maxJump, jump.getNorm());
+            lastEstimate = estimate;
+            lastOdometry = wheels;
+        }
+
+        double duration = Math.max(1e-6, odometry.get(odometry.size() - 1).time - first.time);
+        return String.format("%8.2f %8.1f %6d %15.3f %16.3f %14.3f",
+            xyStdDev, thetaStdDev, used,
+            used > 0 ? Math.sqrt(squaredInnovation / used) : 0,
+            correction / duration,
+            maxJump);
+    }
+
+    private static double[] parseList(String list) {
+        return Arrays.stream(list.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+}
@@ -9,36 +9,64 @@ import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.DemandType;
 import com.ctre.phoenix.motorcontrol.TalonFXControlMode;
+import com.ctre.phoenix.motorcontrol.TalonFXSimCollection;
 import com.ctre.phoenix.motorcontrol.can.WPI_TalonFX;
 import com.ctre.phoenix.sensors.CANCoder;
 import com.ctre.phoenix.sensors.SensorTimeBase;
 
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
 import edu.wpi.first.wpilibj.DoubleSolenoid;
 import edu.wpi.first.wpilibj.Encoder;
-import edu.wpi.first.wpilibj.PneumaticsModuleType;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.CurrentBudget;
+import frc.robot.CurrentBudget.Group;
+import frc.robot.sim.RobotSim;
 
-public class Arm extends SubsystemBase {
+public class Arm extends MechanismBase {
 
   private final WPI_TalonFX masterArm = new WPI_TalonFX(Constants.kArm.UpperArm, "CANivore");
   private final WPI_TalonFX slaveArm = new WPI_TalonFX(Constants.kArm.LowerArm, "CANivore");
   private final CANCoder encoder = new CANCoder(35); //add proper can id and change all references from encoder to cancoder
   
   //private final Encoder encoder = new Encoder(0, 1);
-  private boolean isInInfoMode = true;
-  private final DoubleSolenoid armLock = new DoubleSolenoid(50, PneumaticsModuleType.REVPH, Constants.kLock.closed, Constants.kLock.open);
+  private final Pneumatics.Valve armLock;
 
   // Notes:re
   // Encoder -> 0a, 1b
   // Limit Switch Falcon (5)
   // Lock -> 2 closed, 3 open
 
+  /* Snapshot, read once per loop in readSensors() */
+  private double angle = 0;
+  private boolean isRevLimitClosed = false;
+  private double angleRate = 0;
+  private boolean isFwdLimitClosed = false;
+  private double masterPosition = 0;
+
+  private final DoublePublisher anglePub = publishDouble("angle");
+  private final BooleanPublisher limitPub = publishBoolean("Limit Switch Engaged");
+  private final DoublePublisher ratePub = publishDouble("Encoder Rate");
+  private final BooleanPublisher fwdLimitPub = publishBoolean("Limit Fwd Switch Engaged");
+  private final DoublePublisher masterPositionPub = publishDouble("Master Interal Encoder Count");
+  private final BooleanPublisher solenoidPub = publishBoolean("Solenoid state");
+
+  /* Simulation, angle from horizontal with 0 fakeDeg (stowed on the switch) hanging straight down */
+  private SingleJointedArmSim armSim;
+  private Value lastSimLock = Value.kOff;
+
   /** Creates a new ArmSubsystem. */
-  public Arm() {
+  public Arm(Pneumatics pneumatics) {
+    armLock = pneumatics.makeValve(Constants.kLock.closed, Constants.kLock.open);
     encoder.configFeedbackCoefficient(0.25, "fakeDeg",SensorTimeBase.PerSecond);
 
     // SmartDashboard.putNumber("Arm kF", 0.00);
@@ -60,6 +88,9 @@ public class Arm extends SubsystemBase {
 
     slaveArm.follow(masterArm);
 
+    CurrentBudget.register(Group.ARM, masterArm);
+    CurrentBudget.register(Group.ARM, slaveArm);
+
   }
 
   public void armToAngle() {
@@ -101,6 +132,7 @@ public class Arm extends SubsystemBase {
       () -> {
         masterArm.setSelectedSensorPosition(0);
         slaveArm.setSelectedSensorPosition(0);
+        masterPosition = 0;
       }
     );
   }
@@ -117,6 +149,13 @@ public class Arm extends SubsystemBase {
     return armLock.get();
   }
 
+  /**
+   * @return true once the lock should have finished moving to where it was last told
+   */
+  public boolean isLockReady(){
+    return armLock.isReady();
+  }
+
   public Command toggleArm() {
     return runOnce(
         () -> {
@@ -125,16 +164,24 @@ public class Arm extends SubsystemBase {
   }
 
   public boolean isLimitSwithEngaged() {
-    return masterArm.getSensorCollection().isRevLimitSwitchClosed() == 1;
+    return isRevLimitClosed;
   }
 
   public void resetEncoderCountArmMotors(){
     masterArm.setSelectedSensorPosition(0);
     slaveArm.setSelectedSensorPosition(0) ;
+    masterPosition = 0;
   }
 
   public double getArmEcnoderAngle(){
-    return encoder.getPosition();
+    return angle;
+  }
+
+  /**
+   * @return fakeDeg per second, see {@link Constants.kArm#fakeDegreesPerDegree}
+   */
+  public double getVelocity(){
+    return angleRate;
   }
 
   public void setMotors(double t){
@@ -143,24 +190,74 @@ public class Arm extends SubsystemBase {
   
 
   @Override
-  public void periodic() {
-    // This method will be called once per scheduler run
-    if(false){
-      SmartDashboard.putBoolean("Limit Switch Engaged", isLimitSwithEngaged());
-      SmartDashboard.putNumber("Encoder Rate", encoder.getVelocity());
-      SmartDashboard.putNumber("Limit Switch value", masterArm.getSensorCollection().isFwdLimitSwitchClosed());
-      SmartDashboard.putNumber("Limit Rev Switch value", masterArm.getSensorCollection().isRevLimitSwitchClosed());
-      //SmartDashboard.putNumber("Encoder Distance per Pulse", encoder.getDistancePerPulse());
-      SmartDashboard.putNumber("Master Interal Encoder Count", masterArm.getSelectedSensorPosition());
-
-      SmartDashboard.putBoolean("Solenoid state", (getSolenoid().equals(Value.kForward)));
+  protected void readSensors() {
+    angle = encoder.getPosition();
+    isRevLimitClosed = masterArm.isRevLimitSwitchClosed() == 1;
+    angleRate = encoder.getVelocity(); //ArmToAnglePID waits for it to settle before the lock goes in
+    if(isInfoEnabled()){
+      isFwdLimitClosed = masterArm.isFwdLimitSwitchClosed() == 1;
+      masterPosition = masterArm.getSelectedSensorPosition();
+    }
+  }
+
+  @Override
+  protected void publish() {
+    anglePub.set(angle);
+    if(isInfoEnabled()){
+      limitPub.set(isRevLimitClosed);
+      ratePub.set(angleRate);
+      fwdLimitPub.set(isFwdLimitClosed);
+      masterPositionPub.set(masterPosition);
+      solenoidPub.set(getSolenoid() == Value.kForward);
+    }
+  }
+
+  @Override
+  public void simulationPeriodic() {
+    if(armSim == null){
+      armSim = new SingleJointedArmSim(
+        DCMotor.getFalcon500(2),
+        Constants.kArm.gearRatio,
+        SingleJointedArmSim.estimateMOI(Constants.kArm.lengthMeters, Constants.kArm.massKg),
+        Constants.kArm.lengthMeters,
+        Math.toRadians(-90),
+        Math.toRadians(Constants.kArm.maxAngleDegrees - 90),
+        true);
+      armSim.setState(VecBuilder.fill(Math.toRadians(-90), 0));
     }
-    SmartDashboard.putNumber("angle", encoder.getPosition());
+    TalonFXSimCollection masterSim = masterArm.getSimCollection();
+    masterSim.setBusVoltage(RobotController.getBatteryVoltage());
 
-    
-    if(isLimitSwithEngaged()){
-      encoder.setPosition(0);
+    Value lock = armLock.get();
+    if(lock != lastSimLock){
+      RobotSim.onSolenoidActuation();
+      lastSimLock = lock;
     }
+
+    //Locked arm doesn't move no matter what the motors do
+    if(lock != Value.kForward){
+      armSim.setInputVoltage(masterSim.getMotorOutputLeadVoltage());
+      armSim.update(TimedRobot.kDefaultPeriod);
+    }
+    else {
+      armSim.setState(VecBuilder.fill(armSim.getAngleRads(), 0));
+    }
+
+    double degrees = Math.toDegrees(armSim.getAngleRads()) + 90;
+    encoder.getSimCollection().setRawPosition((int) (degrees * Constants.kArm.fakeDegreesPerDegree / 0.25));
+    encoder.getSimCollection().setVelocity((int) (Math.toDegrees(armSim.getVelocityRadPerSec()) * Constants.kArm.fakeDegreesPerDegree / 0.25 / 10.0)); //raw per 100ms
+    masterSim.setLimitRev(armSim.hasHitLowerLimit());
+    masterSim.setSupplyCurrent(armSim.getCurrentDrawAmps() / 2);
+    slaveArm.getSimCollection().setSupplyCurrent(armSim.getCurrentDrawAmps() / 2);
+    RobotSim.addCurrent(armSim.getCurrentDrawAmps());
+  }
+
+  /**
+   * Arm angle comes from the CANCoder, not the Talon, so this is run by {@link Homing} on the switch edge.
+   */
+  public void zeroArmEncoder(){
+    encoder.setPosition(0);
+    angle = 0;
   }
 
 }
@@ -0,0 +1,76 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.util.AsyncLog;
+
+/**
+ * Rezeros mechanisms on the rising edge of their limit switch instead of every loop the switch is held.
+ * Mechanisms whose Talon clears its own position on the limit (configClearPositionOnLimitR)
+ * register without a rezero action and only get the event logged.
+ */
+public class Homing extends SubsystemBase {
+
+  private static class HomingSwitch {
+    final String name;
+    final BooleanSupplier isEngaged;
+    final Runnable rezero;
+    final String logMessage;
+    boolean wasEngaged = false;
+    double lastHomedTime = -1;
+
+    HomingSwitch(String name, BooleanSupplier isEngaged, Runnable rezero) {
+      this.name = name;
+      this.isEngaged = isEngaged;
+      this.rezero = rezero;
+      this.logMessage = "Homing: " + name + " homed at ";
+    }
+  }
+
+  private final ArrayList<HomingSwitch> switches = new ArrayList<>();
+
+  /**
+   * @param name shows up in the log
+   * @param isEngaged limit switch state
+   * @param rezero runs once per switch closing, null if the Talon clears the position itself
+   */
+  public void register(String name, BooleanSupplier isEngaged, Runnable rezero) {
+    switches.add(new HomingSwitch(name, isEngaged, rezero));
+  }
+
+  /**
+   * @return FPGA time of the last homing event, -1 if it never homed
+   */
+  public double getLastHomedTime(String name) {
+    for (HomingSwitch homingSwitch : switches) {
+      if (homingSwitch.name.equals(name)) {
+        return homingSwitch.lastHomedTime;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public void periodic() {
+    for (int i = 0; i < switches.size(); i++) {
+      HomingSwitch homingSwitch = switches.get(i);
+      boolean engaged = homingSwitch.isEngaged.getAsBoolean();
+
+      if (engaged && !homingSwitch.wasEngaged) {
+        if (homingSwitch.rezero != null) {
+          homingSwitch.rezero.run();
+        }
+        homingSwitch.lastHomedTime = Timer.getFPGATimestamp();
+        AsyncLog.log(homingSwitch.logMessage, homingSwitch.lastHomedTime);
+      }
+      homingSwitch.wasEngaged = engaged;
+    }
+  }
+}
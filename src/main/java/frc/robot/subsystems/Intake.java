@@ -6,30 +6,74 @@ package frc.robot.subsystems;
 
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.TalonFXSimCollection;
 import com.ctre.phoenix.motorcontrol.can.WPI_TalonFX;
 
-import edu.wpi.first.cscore.VideoSource.ConnectionStrategy;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.StringPublisher;
 import edu.wpi.first.wpilibj.DoubleSolenoid;
-import edu.wpi.first.wpilibj.PneumaticsModuleType;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.lib.util.AsyncLog;
+import frc.lib.util.GamePieceDetector;
+import frc.lib.util.GamePieceDetector.GamePiece;
 import frc.robot.Constants;
+import frc.robot.CurrentBudget;
+import frc.robot.CurrentBudget.Group;
+import frc.robot.sim.RobotSim;
 
-public class Intake extends SubsystemBase {
+public class Intake extends MechanismBase {
   /** Creates a new IntakeSubsytem. */
   private final WPI_TalonFX upper = new WPI_TalonFX(Constants.kIntake.upperID);
   private final WPI_TalonFX lower = new WPI_TalonFX(Constants.kIntake.lowerID);
   //private final WPI_TalonFX wrist = new WPI_TalonFX(Constants.kIntake.wrist);
 
-  boolean isInInfoMode = false;
-  // Will also need a sensor at some point. 
+  //Current / velocity signature instead of a dedicated sensor, backs up the limit switch
+  private final GamePieceDetector detector = new GamePieceDetector(
+    Constants.kIntake.rollerFreeSpeed,
+    Constants.kIntake.cubeCurrent,
+    Constants.kIntake.coneCurrent,
+    Constants.kIntake.cubeSpeedRatio,
+    Constants.kIntake.coneSpeedRatio,
+    Constants.kIntake.detectionWindow,
+    Constants.kIntake.spinUpTime,
+    Constants.kIntake.detectionDebounce);
+  private final Trigger hasPiece = new Trigger(detector::hasPiece);
+  private double speed = 0;
 
-  private final DoubleSolenoid solenoid = new DoubleSolenoid(50, PneumaticsModuleType.REVPH, Constants.kIntake.forward, Constants.kIntake.reverse);
+  /* Snapshot, read once per loop in readSensors() */
+  private double upperCurrent = 0;
+  private double lowerCurrent = 0;
+  private double upperVelocity = 0;
+  private double lowerVelocity = 0;
+  private boolean isFwdLimitClosed = false;
 
-  public Intake() {
+  private final BooleanPublisher solenoidPub = publishBoolean("Intake solenoid");
+  private final DoublePublisher currentPub = publishDouble("Intake: Filtered Current");
+  private final DoublePublisher speedRatioPub = publishDouble("Intake: Speed Ratio");
+  private final StringPublisher gamePiecePub = publishString("Intake: Game Piece");
+
+  /* Simulation, empty rollers only */
+  private FlywheelSim upperSim;
+  private FlywheelSim lowerSim;
+  private Value lastSimState = Value.kOff;
+
+  private final Pneumatics.Valve solenoid;
+
+  public Intake(Pneumatics pneumatics) {
+    solenoid = pneumatics.makeValve(Constants.kIntake.forward, Constants.kIntake.reverse);
     upper.setNeutralMode(NeutralMode.Brake);
     lower.setNeutralMode(NeutralMode.Brake);
+
+    CurrentBudget.register(Group.INTAKE, upper);
+    CurrentBudget.register(Group.INTAKE, lower);
   }
 
   public DoubleSolenoid.Value getState(){
@@ -37,10 +81,9 @@ public class Intake extends SubsystemBase {
   }
 
   public void toggleSolenoid(){
-    System.out.println(getState().toString()); //FIXME
-    Value newState = (getState().equals(Value.kForward)) ? Constants.kIntake.RETRACTED : Constants.kIntake.EXTENDED;
+    Value newState = (getState() == Value.kForward) ? Constants.kIntake.RETRACTED : Constants.kIntake.EXTENDED;
     solenoid.set(newState);
-    System.out.println(newState.toString());
+    AsyncLog.log(newState == Constants.kIntake.EXTENDED ? "Intake: extended" : "Intake: retracted");
   }
 
   public void setIntake(Value newState){
@@ -53,22 +96,78 @@ public class Intake extends SubsystemBase {
  
 
   public void setIntake(double speed){
+    this.speed = speed;
     upper.set(speed);
     lower.set(speed);
   }
 
   public boolean limitIsEngaged(){
-    return lower.getSensorCollection().isFwdLimitSwitchClosed() == 1;
+    return isFwdLimitClosed;
+  }
+
+  /**
+   * Debounced current / velocity detection, only true while the rollers are intaking.
+   */
+  public Trigger hasPiece(){
+    return hasPiece;
+  }
+
+  public GamePiece getGamePiece(){
+    return detector.getGamePiece();
+  }
+
+  /**
+   * @return true if the limit switch or the current signature says we have something
+   */
+  public boolean isPieceAcquired(){
+    return limitIsEngaged() || detector.hasPiece();
   }
 
   @Override
-  public void periodic() {
-    if(isInInfoMode){
-      SmartDashboard.putBoolean("Intake solenoid", (getState().equals(Constants.kIntake.EXTENDED)));
+  protected void readSensors() {
+    upperCurrent = upper.getStatorCurrent();
+    lowerCurrent = lower.getStatorCurrent();
+    upperVelocity = upper.getSelectedSensorVelocity();
+    lowerVelocity = lower.getSelectedSensorVelocity();
+    isFwdLimitClosed = lower.isFwdLimitSwitchClosed() == 1;
+
+    detector.update(speed, upperCurrent, lowerCurrent, upperVelocity, lowerVelocity);
+  }
+
+  @Override
+  protected void publish() {
+    if(isInfoEnabled()){
+      solenoidPub.set(getState() == Constants.kIntake.EXTENDED);
+      currentPub.set(detector.getFilteredCurrent());
+      speedRatioPub.set(detector.getFilteredSpeedRatio());
+      gamePiecePub.set(detector.getGamePiece().name());
+    }
+  }
+
+  @Override
+  public void simulationPeriodic() {
+    if(upperSim == null){
+      upperSim = new FlywheelSim(DCMotor.getFalcon500(1), 1.0, 0.0005);
+      lowerSim = new FlywheelSim(DCMotor.getFalcon500(1), 1.0, 0.0005);
     }
-    // if(limitIsEngaged()){
-    //   upper.set(0);
-    //   lower.set(0);
-    // }
+    simulateRoller(upper.getSimCollection(), upperSim);
+    simulateRoller(lower.getSimCollection(), lowerSim);
+
+    Value state = solenoid.get();
+    if(state != lastSimState){
+      RobotSim.onSolenoidActuation();
+      lastSimState = state;
+    }
+  }
+
+  private void simulateRoller(TalonFXSimCollection rollerSimState, FlywheelSim rollerSim){
+    rollerSimState.setBusVoltage(RobotController.getBatteryVoltage());
+    rollerSim.setInputVoltage(rollerSimState.getMotorOutputLeadVoltage());
+    rollerSim.update(TimedRobot.kDefaultPeriod);
+
+    rollerSimState.setIntegratedSensorVelocity((int) (rollerSim.getAngularVelocityRPM() * 2048.0 / 600.0));
+    rollerSimState.setStatorCurrent(rollerSim.getCurrentDrawAmps());
+    rollerSimState.setSupplyCurrent(rollerSim.getCurrentDrawAmps());
+    RobotSim.addCurrent(rollerSim.getCurrentDrawAmps());
   }
 }
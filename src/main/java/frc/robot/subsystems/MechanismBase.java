@@ -0,0 +1,69 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringPublisher;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.util.LoopBudget;
+import frc.lib.util.LoopBudget.Load;
+
+/**
+ * Base for the superstructure subsystems. Every loop the sensors are read once into primitive fields
+ * (the snapshot), the getters return those fields, and the snapshot is published through publishers
+ * bound once in the constructor. Nothing in the loop allocates or looks up a key.
+ *
+ * <p>Getters lag the hardware by up to a loop. Methods that write a sensor (zeroing or seeding an
+ * encoder) also write its snapshot field, so a getter called right after sees the new value
+ * instead of the one from before the write.
+ */
+public abstract class MechanismBase extends SubsystemBase {
+  //Same table SmartDashboard.putX used, so existing dashboard layouts keep working
+  private final NetworkTable table = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+
+  protected boolean isInInfoMode = false;
+
+  protected DoublePublisher publishDouble(String key) {
+    return table.getDoubleTopic(key).publish();
+  }
+
+  protected BooleanPublisher publishBoolean(String key) {
+    return table.getBooleanTopic(key).publish();
+  }
+
+  protected StringPublisher publishString(String key) {
+    return table.getStringTopic(key).publish();
+  }
+
+  /** Reads every sensor this mechanism uses into its snapshot fields. */
+  protected abstract void readSensors();
+
+  /** Pushes the snapshot to the pre-bound publishers. */
+  protected abstract void publish();
+
+  /** Anything else that has to run every loop, after the snapshot is taken. */
+  protected void mechanismPeriodic() {}
+
+  public void setInfoMode(boolean isInInfoMode) {
+    this.isInInfoMode = isInInfoMode;
+  }
+
+  /** Info-mode values only go out when the loop budget hasn't shed them. */
+  protected boolean isInfoEnabled() {
+    return isInInfoMode && !LoopBudget.isShed(Load.INFO_TELEMETRY);
+  }
+
+  @Override
+  public final void periodic() {
+    readSensors();
+    if (LoopBudget.shouldRunNonCritical()) {
+      publish();
+    }
+    mechanismPeriodic();
+  }
+}
@@ -0,0 +1,186 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+import edu.wpi.first.wpilibj.PneumaticHub;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+import frc.lib.util.AsyncLog;
+import frc.robot.Constants.kPneumatics;
+import frc.robot.CurrentBudget;
+import frc.robot.CurrentBudget.Group;
+import frc.robot.sim.RobotSim;
+
+/**
+ * Owns the REV PH: hands out the double solenoids the mechanisms use, reads the tank pressure once
+ * a loop, and schedules the compressor around drive load. While drive is quiet it tops the tanks up
+ * early, while drive is pulling hard (or the battery sags) it waits, unless the tanks are below
+ * {@link kPneumatics#deferFloor}.
+ *
+ * <p>Each {@link Valve} caches what it was last told, so reads are free and repeated sets never
+ * reach CAN, and predicts when its cylinder will have finished moving from the stored pressure.
+ */
+public class Pneumatics extends MechanismBase {
+  private final PneumaticHub hub = new PneumaticHub(kPneumatics.hubID);
+
+  private enum CompressorMode { TOP_UP, DEFERRED, FLOOR }
+  private CompressorMode compressorMode = null;
+  private double quietSince = 0;
+
+  /* Snapshot, read once per loop in readSensors() */
+  private double pressure = kPneumatics.maxPressure;
+  private boolean isCompressorOn = false;
+
+  private final DoublePublisher pressurePub = publishDouble("Pneumatics: Pressure");
+  private final BooleanPublisher compressorPub = publishBoolean("Pneumatics: Compressor On");
+  private final BooleanPublisher deferredPub = publishBoolean("Pneumatics: Compressor Deferred");
+
+  /**
+   * A double solenoid on the hub with its commanded state cached.
+   */
+  public class Valve {
+    private final DoubleSolenoid solenoid;
+    private Value state = Value.kOff;
+    private double readyTime = 0;
+
+    private Valve(int forwardChannel, int reverseChannel) {
+      solenoid = hub.makeDoubleSolenoid(forwardChannel, reverseChannel);
+    }
+
+    /** Only talks to the hub when the state actually changes. */
+    public void set(Value newState) {
+      if (newState == state) {
+        return;
+      }
+      state = newState;
+      solenoid.set(newState);
+      readyTime = newState == Value.kOff ? Timer.getFPGATimestamp() : Timer.getFPGATimestamp() + getActuationTime();
+    }
+
+    /** Last commanded state, no CAN read */
+    public Value get() {
+      return state;
+    }
+
+    /** Same as DoubleSolenoid.toggle(), off stays off. */
+    public void toggle() {
+      if (state == Value.kForward) {
+        set(Value.kReverse);
+      } else if (state == Value.kReverse) {
+        set(Value.kForward);
+      }
+    }
+
+    /**
+     * @return true once the cylinder should have finished its last commanded stroke
+     */
+    public boolean isReady() {
+      return Timer.getFPGATimestamp() >= readyTime;
+    }
+
+    /** FPGA time the last stroke should be done */
+    public double getReadyTime() {
+      return readyTime;
+    }
+  }
+
+  public Pneumatics() {
+    isInInfoMode = true;
+  }
+
+  public Valve makeValve(int forwardChannel, int reverseChannel) {
+    return new Valve(forwardChannel, reverseChannel);
+  }
+
+  /**
+   * @return seconds for a stroke at the current tank pressure, the regulator holds it flat until
+   * the tanks drop under working pressure
+   */
+  public double getActuationTime() {
+    if (pressure <= 0) {
+      return kPneumatics.maxActuationTime;
+    }
+    return Math.min(kPneumatics.maxActuationTime,
+      kPneumatics.actuationTime * Math.max(1, kPneumatics.workingPressure / pressure));
+  }
+
+  /** psi */
+  public double getPressure() {
+    return pressure;
+  }
+
+  public boolean isCompressorOn() {
+    return isCompressorOn;
+  }
+
+  @Override
+  protected void readSensors() {
+    if (RobotBase.isSimulation()) {
+      pressure = RobotSim.getPressure();
+      isCompressorOn = RobotSim.isCompressorOn();
+    } else {
+      pressure = hub.getPressure(kPneumatics.pressureSensorChannel);
+      isCompressorOn = hub.getCompressor();
+    }
+  }
+
+  @Override
+  protected void publish() {
+    pressurePub.set(pressure);
+    compressorPub.set(isCompressorOn);
+    deferredPub.set(compressorMode == CompressorMode.DEFERRED);
+  }
+
+  @Override
+  protected void mechanismPeriodic() {
+    double now = Timer.getFPGATimestamp();
+    //Drive load only, a mechanism holding position shouldn't keep the tanks from filling
+    double driveDrawn = CurrentBudget.getDrawn(Group.DRIVE) + CurrentBudget.getDrawn(Group.STEER);
+    boolean busy = driveDrawn > kPneumatics.deferCurrent || CurrentBudget.getVoltage() < kPneumatics.deferVoltage;
+    if (busy) {
+      quietSince = now;
+    }
+
+    CompressorMode mode;
+    if (pressure < kPneumatics.deferFloor) {
+      mode = CompressorMode.FLOOR;
+    } else if (now - quietSince < kPneumatics.resumeDelay) {
+      mode = CompressorMode.DEFERRED;
+    } else {
+      mode = CompressorMode.TOP_UP;
+    }
+    setCompressorMode(mode);
+  }
+
+  /** Only talks to the hub when the mode changes. */
+  private void setCompressorMode(CompressorMode mode) {
+    if (mode == compressorMode) {
+      return;
+    }
+    compressorMode = mode;
+    switch (mode) {
+      case TOP_UP:
+        enableCompressor(kPneumatics.topUpPressure, kPneumatics.maxPressure);
+        break;
+      case FLOOR:
+        enableCompressor(kPneumatics.deferFloor, kPneumatics.maxPressure);
+        break;
+      case DEFERRED:
+        hub.disableCompressor();
+        RobotSim.setCompressorControl(false, 0, 0);
+        AsyncLog.log("Pneumatics: compressor deferred for drive load, psi: ", pressure);
+        break;
+    }
+  }
+
+  private void enableCompressor(double onPressure, double offPressure) {
+    hub.enableCompressorAnalog(onPressure, offPressure);
+    RobotSim.setCompressorControl(true, onPressure, offPressure);
+  }
+}
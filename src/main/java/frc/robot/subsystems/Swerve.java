@@ -1,12 +1,21 @@
 package frc.robot.subsystems;
 
 import frc.robot.SwerveModule;
+import frc.robot.TippingModel;
 import frc.robot.autos.AutoBalancePIDCommand;
 import frc.robot.Constants;
+import frc.lib.util.AccelLimiter;
+import frc.lib.util.AsyncLog;
+import frc.lib.util.LoopBudget;
+import frc.lib.util.LoopBudget.Load;
+import frc.robot.sim.RobotSim;
 
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 
 import com.ctre.phoenix.sensors.Pigeon2;
@@ -15,6 +24,10 @@ import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -27,12 +40,44 @@ import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
 
 public class Swerve extends SubsystemBase {
-    public SwerveDriveOdometry swerveOdometry;
+    public SwerveDrivePoseEstimator swerveOdometry; //odometry with vision measurements fused in
     public SwerveModule[] mSwerveMods;
     public Pigeon2 gyro;
 
     public boolean isInInfoMode = false; //Should include this on all subsystems as a quick-toggle to SD stuff 
 
+    /* Gyro snapshot, sampled once per loop in periodic() */
+    private final double[] yprBuffer = new double[3];
+    private final double[] rateBuffer = new double[3];
+    private Rotation2d yaw = new Rotation2d();
+    private double yawSin = 0.0;
+    private double yawCos = 1.0;
+    private double pitch = 0.0;
+    private double roll = 0.0;
+    private double yawRate = 0.0; //degrees per second, same direction as getYaw()
+    private double pitchRate = 0.0;
+    private double rollRate = 0.0;
+
+    //Wheels pointed at the center of the robot, in module order
+    private static final Rotation2d[] xLockAngles = {
+        new Rotation2d(Constants.kSwerve.wheelBase, Constants.kSwerve.trackWidth),
+        new Rotation2d(Constants.kSwerve.wheelBase, -Constants.kSwerve.trackWidth),
+        new Rotation2d(-Constants.kSwerve.wheelBase, Constants.kSwerve.trackWidth),
+        new Rotation2d(-Constants.kSwerve.wheelBase, -Constants.kSwerve.trackWidth)
+    };
+
+    /* Acceleration limit from the superstructure's CoG, see setTippingModel */
+    private final AccelLimiter accelLimiter = new AccelLimiter();
+    private TippingModel tippingModel = null;
+
+    /* Data log, for replaying vision against the same odometry offline (VisionReplay) */
+    public static final String odometryEntry = "/drive/odometry"; //[yaw degrees, then distance (m) and angle (deg) per module]
+    public static final String poseEntry = "/drive/pose"; //[x, y, degrees] from the pose estimator
+    private final DoubleArrayLogEntry odometryLog = new DoubleArrayLogEntry(DataLogManager.getLog(), odometryEntry);
+    private final DoubleArrayLogEntry poseLog = new DoubleArrayLogEntry(DataLogManager.getLog(), poseEntry);
+    private final double[] odometryRecord = new double[9];
+    private final double[] poseRecord = new double[3];
+
     //SmartDashBoard
     double angleToTurn = 0.0;
     double horizontalSpeed_SD = 0.5;
@@ -82,44 +127,86 @@ public class Swerve extends SubsystemBase {
         };
 
 
-        //Fix for setting module offsets
-        Timer.delay(3.5);
+        //Fix for setting module offsets (CANCoders aren't slow to boot in sim, so don't hold up tests)
+        if(RobotBase.isReal()){
+            Timer.delay(3.5);
+        }
         resetModulesToAbsolute();
 
-        swerveOdometry = new SwerveDriveOdometry(Constants.kSwerve.swerveKinematics, getYaw(), getModulePositions());
+        swerveOdometry = new SwerveDrivePoseEstimator(Constants.kSwerve.swerveKinematics, getYaw(), getModulePositions(), new Pose2d());
     }
 
     public void drive(Translation2d translation, double rotation, boolean fieldRelative, boolean isOpenLoop) {
+        if(tippingModel != null){
+            tippingModel.update();
+            accelLimiter.setEnvelope(
+                tippingModel.getMinAccelX(), tippingModel.getMaxAccelX(),
+                tippingModel.getMinAccelY(), tippingModel.getMaxAccelY());
+        }
         SwerveModuleState[] swerveModuleStates =
-            Constants.kSwerve.swerveKinematics.toSwerveModuleStates(
-                fieldRelative ? ChassisSpeeds.fromFieldRelativeSpeeds(
-                                    translation.getX(), 
-                                    translation.getY(), 
-                                    rotation, 
-                                    getYaw()
-                                )
-                                : new ChassisSpeeds(
-                                    translation.getX(), 
-                                    translation.getY(), 
-                                    rotation)
-                                );
-        SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, Constants.kSwerve.maxSpeed);
+            calculateModuleStates(accelLimiter, translation, rotation, fieldRelative, yawCos, yawSin, Timer.getFPGATimestamp());
 
         for(SwerveModule mod : mSwerveMods){
             mod.setDesiredState(swerveModuleStates[mod.moduleNumber], isOpenLoop);
         }
     }
 
+    /**
+     * The math half of drive(), no devices touched, so SwerveDriveBenchmark times the same code.
+     * @param yawCos cos of the robot's field heading
+     * @param yawSin sin of the robot's field heading
+     * @param timestamp seconds, for the acceleration limit
+     */
+    public static SwerveModuleState[] calculateModuleStates(AccelLimiter accelLimiter, Translation2d translation, double rotation, boolean fieldRelative, double yawCos, double yawSin, double timestamp) {
+        //Limited in the field frame so a turning robot doesn't read as accelerating
+        double vx = translation.getX();
+        double vy = translation.getY();
+        if(!fieldRelative){
+            vx = translation.getX() * yawCos - translation.getY() * yawSin;
+            vy = translation.getX() * yawSin + translation.getY() * yawCos;
+        }
+        accelLimiter.calculate(vx, vy, yawCos, yawSin, timestamp);
+
+        SwerveModuleState[] swerveModuleStates =
+            Constants.kSwerve.swerveKinematics.toSwerveModuleStates(
+                fieldToRobot(accelLimiter.getVx(), accelLimiter.getVy(), rotation, yawCos, yawSin));
+        SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, Constants.kSwerve.maxSpeed);
+        return swerveModuleStates;
+    }
+
     public void driveHorizontal(double speed){
         SwerveModuleState[] swerveModuleStates = 
             Constants.kSwerve.swerveKinematics.toSwerveModuleStates(
-                ChassisSpeeds.fromFieldRelativeSpeeds( speed * Constants.kSwerve.maxSpeed, 0, 0, getYaw())
+                fieldToRobot( speed * Constants.kSwerve.maxSpeed, 0, 0)
             );
 
         for(SwerveModule mod: mSwerveMods)
             mod.setDesiredState(swerveModuleStates[mod.moduleNumber], true);
+        accelLimiter.reset(speed * Constants.kSwerve.maxSpeed, 0);
     }    
 
+    /**
+     * Limits drive() acceleration to what the robot can take without tipping, from the model's
+     * CoG each loop. Null turns the limit off. Path following (setModuleStates) isn't limited,
+     * paths have their own acceleration constraints.
+     */
+    public void setTippingModel(TippingModel tippingModel) {
+        this.tippingModel = tippingModel;
+        if(tippingModel == null){
+            accelLimiter.setEnvelope(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Turns the wheels into an X so the robot resists being pushed.
+     */
+    public void lockModulesInX() {
+        for(SwerveModule mod : mSwerveMods){
+            mod.lockAt(xLockAngles[mod.moduleNumber]);
+        }
+        accelLimiter.reset(0, 0);
+    }
+
     /* Used by SwerveControllerCommand in Auto */
     public void setModuleStates(SwerveModuleState[] desiredStates) {
         SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, Constants.kSwerve.maxSpeed);
@@ -127,24 +214,102 @@ public class Swerve extends SubsystemBase {
         for(SwerveModule mod : mSwerveMods){
             mod.setDesiredState(desiredStates[mod.moduleNumber], false);
         }
+
+        //Teleop picks up from wherever the path left the robot
+        ChassisSpeeds speeds = Constants.kSwerve.swerveKinematics.toChassisSpeeds(desiredStates);
+        accelLimiter.reset(
+            speeds.vxMetersPerSecond * yawCos - speeds.vyMetersPerSecond * yawSin,
+            speeds.vxMetersPerSecond * yawSin + speeds.vyMetersPerSecond * yawCos);
     }    
 
     public Pose2d getPose() {
-        return swerveOdometry.getPoseMeters();
+        return swerveOdometry.getEstimatedPosition();
+    }
+
+    /**
+     * Same as ChassisSpeeds.fromFieldRelativeSpeeds, using this loop's sin / cos of the yaw.
+     */
+    private ChassisSpeeds fieldToRobot(double vx, double vy, double omega) {
+        return fieldToRobot(vx, vy, omega, yawCos, yawSin);
+    }
+
+    private static ChassisSpeeds fieldToRobot(double vx, double vy, double omega, double yawCos, double yawSin) {
+        return new ChassisSpeeds(
+            vx * yawCos + vy * yawSin,
+            -vx * yawSin + vy * yawCos,
+            omega);
+    }
+
+    /**
+     * Reads yaw, pitch, roll and the angular rates from the Pigeon in one call each, everything
+     * else in the loop reads the cached values.
+     */
+    private void sampleGyro() {
+        gyro.getYawPitchRoll(yprBuffer);
+        gyro.getRawGyro(rateBuffer);
+
+        setCachedYaw(yprBuffer[0]);
+        pitch = yprBuffer[1];
+        roll = yprBuffer[2];
+        rollRate = rateBuffer[0];
+        pitchRate = rateBuffer[1];
+        yawRate = (Constants.kSwerve.invertGyro) ? -rateBuffer[2] : rateBuffer[2];
+
+        //The Pigeon sim only does yaw, the charge station model supplies the tilt
+        if(RobotBase.isSimulation()){
+            pitch = 0.0;
+            pitchRate = 0.0;
+            roll = RobotSim.getRoll();
+            rollRate = RobotSim.getRollRate();
+        }
+    }
+
+    private void setCachedYaw(double gyroYaw) {
+        yaw = (Constants.kSwerve.invertGyro) ? Rotation2d.fromDegrees(360 - gyroYaw) : Rotation2d.fromDegrees(gyroYaw);
+        yawSin = yaw.getSin();
+        yawCos = yaw.getCos();
     }
 
     public double getPitch() {
-        return gyro.getPitch();
+        return pitch;
     }
 
     public double getRoll() {
-        return gyro.getRoll();
+        return roll;
+    }
+
+    /** Degrees per second */
+    public double getPitchRate() {
+        return pitchRate;
+    }
+
+    /** Degrees per second */
+    public double getRollRate() {
+        return rollRate;
+    }
+
+    /** Degrees per second, positive in the same direction as {@link #getYaw()} */
+    public double getYawRate() {
+        return yawRate;
+    }
+
+    /** Measured translation speed in m/s, from the module states */
+    public double getSpeed() {
+        ChassisSpeeds speeds = Constants.kSwerve.swerveKinematics.toChassisSpeeds(getModuleStates());
+        return Math.hypot(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond);
     }
 
     public void resetOdometry(Pose2d pose) {
         swerveOdometry.resetPosition(getYaw(), getModulePositions(), pose);
     }
 
+    /**
+     * @param timestamp FPGA time the camera captured the frame
+     */
+    public void addVisionMeasurement(Pose2d pose, double timestamp, Matrix<N3, N1> stdDevs) {
+        swerveOdometry.addVisionMeasurement(pose, timestamp, stdDevs);
+    }
+
     public SwerveModuleState[] getModuleStates(){
         SwerveModuleState[] states = new SwerveModuleState[4];
         for(SwerveModule mod : mSwerveMods){
@@ -161,20 +326,26 @@ public class Swerve extends SubsystemBase {
         return positions;
     }
 
+    //The Pigeon takes a frame to report a new yaw, so the cache is set directly
     public void zeroGyro(){
         gyro.setYaw(0);
+        setCachedYaw(0);
     }
 
     public void configYaw(double yaw){
         gyro.setYaw(yaw);
+        setCachedYaw(yaw);
     }
 
+    /**
+     * @return yaw sampled at the start of this loop
+     */
     public Rotation2d getYaw() {
-        return (Constants.kSwerve.invertGyro) ? Rotation2d.fromDegrees(360 - gyro.getYaw()) : Rotation2d.fromDegrees(gyro.getYaw());
+        return yaw;
     }
 
     public void resetModulesToAbsolute(){
-        System.out.println("Modules reset");
+        AsyncLog.log("Modules reset");
         for(SwerveModule mod : mSwerveMods){
             mod.resetToAbsolute();
         }
@@ -182,8 +353,11 @@ public class Swerve extends SubsystemBase {
 
     @Override
     public void periodic(){
-        swerveOdometry.update(getYaw(), getModulePositions());  
-        if(isInInfoMode){
+        sampleGyro();
+        SwerveModulePosition[] positions = getModulePositions();
+        swerveOdometry.update(getYaw(), positions);
+        logOdometry(positions);
+        if(isInInfoMode && !LoopBudget.isShed(Load.INFO_TELEMETRY)){
             for(SwerveModule mod : mSwerveMods){
                 SmartDashboard.putNumber("Mod " + mod.moduleNumber + " Cancoder", mod.getCanCoder().getDegrees());
                 SmartDashboard.putNumber("Mod " + mod.moduleNumber + " Integrated", mod.getPosition().angle.getDegrees());
@@ -199,4 +373,33 @@ public class Swerve extends SubsystemBase {
         // SmartDashboard.putNumber("Swerve: Angle", gyro.getYaw());
         
     }
+
+    private void logOdometry(SwerveModulePosition[] positions) {
+        odometryRecord[0] = getYaw().getDegrees();
+        for(int i = 0; i < positions.length; i++){
+            odometryRecord[1 + 2 * i] = positions[i].distanceMeters;
+            odometryRecord[2 + 2 * i] = positions[i].angle.getDegrees();
+        }
+        odometryLog.append(odometryRecord);
+
+        Pose2d pose = getPose();
+        poseRecord[0] = pose.getX();
+        poseRecord[1] = pose.getY();
+        poseRecord[2] = pose.getRotation().getDegrees();
+        poseLog.append(poseRecord);
+    }
+
+    @Override
+    public void simulationPeriodic(){
+        for(SwerveModule mod : mSwerveMods){
+            mod.simulationPeriodic(TimedRobot.kDefaultPeriod);
+        }
+
+        //Integrate the heading from what the simulated modules are actually doing
+        ChassisSpeeds speeds = Constants.kSwerve.swerveKinematics.toChassisSpeeds(getModuleStates());
+        double yawRate = Math.toDegrees(speeds.omegaRadiansPerSecond);
+        gyro.getSimCollection().addHeading(Constants.kSwerve.invertGyro ? -yawRate * TimedRobot.kDefaultPeriod : yawRate * TimedRobot.kDefaultPeriod);
+
+        RobotSim.updateChargeStation(getPose().getX(), TimedRobot.kDefaultPeriod);
+    }
 ;}
\ No newline at end of file
@@ -6,65 +6,154 @@ package frc.robot.subsystems;
 
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.TalonFXSimCollection;
 import com.ctre.phoenix.motorcontrol.can.TalonFX;
 import com.ctre.phoenix.motorcontrol.can.WPI_TalonFX;
 
-import edu.wpi.first.wpilibj.DoubleSolenoid;
-import edu.wpi.first.wpilibj.PneumaticsModuleType;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+import edu.wpi.first.wpilibj.simulation.ElevatorSim;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.FunctionalCommand;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.RunCommand;
-import edu.wpi.first.wpilibj2.command.StartEndCommand;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.util.AsyncLog;
 import frc.robot.Constants;
+import frc.robot.CurrentBudget;
+import frc.robot.CurrentBudget.Group;
+import frc.robot.sim.RobotSim;
 
-public class Telescope extends SubsystemBase {
+public class Telescope extends MechanismBase {
   /** Creates a new Telescope. */
   private final WPI_TalonFX leader = new WPI_TalonFX(Constants.kTelescope.leader);
-  private final DoubleSolenoid brake = new DoubleSolenoid(50, PneumaticsModuleType.REVPH, Constants.kTelescope.forward, Constants.kTelescope.reverse);
-  private boolean isInInfoMode = true;
+  private final Pneumatics.Valve brake;
 
-  public Telescope() {
+  /* Snapshot, read once per loop in readSensors() */
+  private double encoderCount = 0;
+  private double velocity = 0;
+  private double profileVelocity = 0;
+  private boolean isRevLimitClosed = false;
+
+  private final DoublePublisher encoderPub = publishDouble("Telescope: Encoder Count");
+
+  /* Simulation */
+  private ElevatorSim telescopeSim;
+  private Value lastSimBrake = Value.kOff;
+
+  public Telescope(Pneumatics pneumatics) {
+    brake = pneumatics.makeValve(Constants.kTelescope.forward, Constants.kTelescope.reverse);
+    isInInfoMode = true;
     setEncoder(0);
     leader.setNeutralMode(NeutralMode.Brake);
     leader.setInverted(true);
 
-    leader.config_kP(0, 0.014978 * 5.2);
+    leader.config_kP(0, Constants.kTelescope.kP);
+    leader.config_kF(0, Constants.kTelescope.kF);
   //  leader.configAllowableClosedloopError(0, 1000);
-    
-    
+
+    leader.configMotionCruiseVelocity(Constants.kTelescope.cruiseVelocity);
+    leader.configMotionAcceleration(Constants.kTelescope.acceleration);
+    leader.configMotionSCurveStrength(Constants.kTelescope.sCurveStrength);
+
+    //encoderLimit was never enforced before, the Talon does it now (manual percent control included)
+    leader.configForwardSoftLimitThreshold(Constants.kTelescope.encoderLimit);
+    leader.configForwardSoftLimitEnable(true);
+    leader.configReverseSoftLimitThreshold(0);
+    leader.configReverseSoftLimitEnable(true);
+
+    leader.configClearPositionOnLimitR(true, 0); //Talon zeros itself on the switch, see Homing
+
+    CurrentBudget.register(Group.TELESCOPE, leader);
   }
 
   //Needs Tuner to Find Extension Distance
   // 0.75 x 1023   /  (max distance)
   // Let's make sure sensor is in correct phase and + makes it extend in tuner!
+  /**
+   * @param distance raw encoder counts, prefer {@link #extendToLength_Command(double)}. Clamped to the
+   * soft limits, so it stops at 0 rather than seating on the switch, use RetractTelescopeUntilLimit for that.
+   */
   public Command extendArmToDistance_Command(double distance) {
-    return new StartEndCommand(
+    //Motion Magic starts once the brake has let go instead of driving against it
+    return new FunctionalCommand(
+        () -> this.setBrake(Value.kReverse),
         () -> {
-          this.setBrake(Value.kReverse);
-          this.leader.set(ControlMode.Position, distance);
+          if(brake.isReady()){
+            this.setMotionMagic(distance);
+          }
         },
-        () -> {
+        interrupted -> {
           this.leader.set(0);
           this.setBrake(Value.kForward);
-          System.out.println("Extend Arm Ended: " + getEncoder());
+          AsyncLog.log("Extend Arm Ended: ", getEncoder());
         },
+        () -> false,
         this);
   }
 
+  /**
+   * @param lengthCm extension past the retract limit switch, in cm
+   */
+  public Command extendToLength_Command(double lengthCm) {
+    return extendArmToDistance_Command(cmToCounts(lengthCm));
+  }
+
+  /**
+   * Motion Magic to a length, clamped to the soft limits.
+   * @param lengthCm extension past the retract limit switch, in cm
+   */
+  public void setLength(double lengthCm) {
+    setMotionMagic(cmToCounts(lengthCm));
+  }
+
+  public double getLength() {
+    return getEncoder() / Constants.kTelescope.countsPerCm;
+  }
+
+  public static double cmToCounts(double lengthCm) {
+    return lengthCm * Constants.kTelescope.countsPerCm;
+  }
+
+  private void setMotionMagic(double count) {
+    leader.set(ControlMode.MotionMagic, Math.max(0, Math.min(count, Constants.kTelescope.encoderLimit)));
+  }
+
   public void retractArm(double speed) {
     setBrake(Value.kReverse);
     leader.set(-.2);
   }
 
+  /**
+   * The reverse soft limit has to be off while creeping onto the switch, the encoder may have drifted.
+   */
+  public void setReverseSoftLimit(boolean enabled) {
+    leader.configReverseSoftLimitEnable(enabled, 0);
+  }
+
+  public double getVelocity(){
+    return velocity;
+  }
+
+  /**
+   * @return counts per 100ms the Motion Magic profile is commanding right now, 0 outside Motion Magic
+   */
+  public double getProfileVelocity(){
+    return profileVelocity;
+  }
+
   public void setEncoder(int count){
     leader.getSensorCollection().setIntegratedSensorPosition(count, 0);
+    encoderCount = count;
   }
 
   public double getEncoder(){
-    return leader.getSelectedSensorPosition();
+    return encoderCount;
   }
 
   public void setMotor(double count){
@@ -92,19 +181,69 @@ public class Telescope extends SubsystemBase {
     return brake.get();
   }
 
+  /**
+   * @return true once the brake should have finished moving to where it was last told
+   */
+  public boolean isBrakeReady(){
+    return brake.isReady();
+  }
+
   public boolean isLimitEngaged(){
-    return leader.isRevLimitSwitchClosed() == 1;
+    return isRevLimitClosed;
+  }
+
+  @Override
+  protected void readSensors() {
+    encoderCount = leader.getSelectedSensorPosition();
+    velocity = leader.getSelectedSensorVelocity();
+    profileVelocity = leader.getControlMode() == ControlMode.MotionMagic ? leader.getActiveTrajectoryVelocity() : 0;
+    isRevLimitClosed = leader.isRevLimitSwitchClosed() == 1;
+  }
+
+  @Override
+  protected void publish() {
+    if(isInfoEnabled()){
+      encoderPub.set(encoderCount);
+    }
   }
 
   @Override
-  public void periodic() {
-    if(isInInfoMode){
-      SmartDashboard.putNumber("Telescope: Encoder Count", getEncoder());
+  public void simulationPeriodic() {
+    //Counts are 2048 per motor rev, pick the drum radius that gives countsPerCm through kGearReduction
+    double motorRevsPerMeter = Constants.kTelescope.countsPerCm * 100.0 / 2048.0;
+    if(telescopeSim == null){
+      telescopeSim = new ElevatorSim(
+        DCMotor.getFalcon500(1),
+        Constants.kTelescope.kGearReduction,
+        Constants.kTelescope.carriageMassKg,
+        Constants.kTelescope.kGearReduction / (2.0 * Math.PI * motorRevsPerMeter),
+        0.0,
+        Constants.kTelescope.telescopeLength / 100.0,
+        false); //gravity along the telescope depends on the arm angle, left out
     }
+    TalonFXSimCollection leaderSim = leader.getSimCollection();
+    leaderSim.setBusVoltage(RobotController.getBatteryVoltage());
 
-    if(leader.getSensorCollection().isRevLimitSwitchClosed() == 1){
-      setEncoder(0);
+    Value brakeState = brake.get();
+    if(brakeState != lastSimBrake){
+      RobotSim.onSolenoidActuation();
+      lastSimBrake = brakeState;
+    }
+
+    //Brake engaged (kForward) holds the tube, leader is inverted so flip into the sim's frame
+    if(brakeState != Value.kForward){
+      telescopeSim.setInputVoltage(-leaderSim.getMotorOutputLeadVoltage());
+      telescopeSim.update(TimedRobot.kDefaultPeriod);
+    }
+    else {
+      telescopeSim.setState(VecBuilder.fill(telescopeSim.getPositionMeters(), 0));
     }
 
+    double counts = telescopeSim.getPositionMeters() * motorRevsPerMeter * 2048.0;
+    leaderSim.setIntegratedSensorRawPosition((int) -counts);
+    leaderSim.setIntegratedSensorVelocity((int) (-telescopeSim.getVelocityMetersPerSecond() * motorRevsPerMeter * 2048.0 / 10.0));
+    leaderSim.setLimitRev(telescopeSim.hasHitLowerLimit());
+    leaderSim.setSupplyCurrent(telescopeSim.getCurrentDrawAmps());
+    RobotSim.addCurrent(telescopeSim.getCurrentDrawAmps());
   }
 }
@@ -0,0 +1,349 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringSubscriber;
+import edu.wpi.first.networktables.TimestampedString;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.util.datalog.StringLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.util.AsyncLog;
+import frc.lib.util.LoopBudget;
+import frc.lib.util.LoopBudget.Load;
+import frc.robot.AprilTagPoseSolver;
+import frc.robot.Constants;
+import frc.robot.LimelightHelpers;
+import frc.robot.LimelightHelpers.LimelightTarget_Fiducial;
+import frc.robot.LimelightHelpers.Results;
+
+/**
+ * Owns every Limelight in {@link Constants.kVision#cameras}. Each camera's json topic has an NT
+ * listener that hands new frames to that camera's own worker thread, which parses them and
+ * publishes an immutable {@link Frame}. The worker is the only writer, readers on the main thread
+ * just get the latest reference, so nothing in the robot loop touches NT or JSON.
+ * Periodic fuses new AprilTag poses into the Swerve pose estimator, either the Limelight's botpose
+ * or, with {@link Constants.kVision#useRioSolver}, an {@link AprilTagPoseSolver} solve on the worker.
+ * With {@link Constants.kVision#recordFrames} every new frame's json and pose also go to the data
+ * log for {@link frc.robot.sim.VisionReplay}.
+ */
+public class VisionSubsystem extends SubsystemBase {
+
+  //Thread safe once configured, shared by the camera workers
+  private static final ObjectMapper mapper = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  /**
+   * One parsed Limelight result. Never changes once published.
+   */
+  public static final class Frame {
+    public static final Frame none = new Frame(0, 0, new Results(), null, Alliance.Blue);
+
+    /** Counts up by one per published frame, per camera */
+    public final long sequence;
+    /** FPGA time the camera captured the image, seconds */
+    public final double timestamp;
+    public final Results results;
+    public final boolean hasTarget;
+    /** Primary target, degrees */
+    public final double tx;
+    public final double ty;
+    /** Alliance origin robot pose from the AprilTags (same frame as odometry and the paths), null if none are in view */
+    public final Pose2d botPose;
+    public final int tagCount;
+    public final double averageTagDistance;
+
+    public Frame(long sequence, double timestamp, Results results) {
+      this(sequence, timestamp, results, null);
+    }
+
+    public Frame(long sequence, double timestamp, Results results, AprilTagPoseSolver solver) {
+      this(sequence, timestamp, results, solver, DriverStation.getAlliance());
+    }
+
+    /**
+     * @param solver solved on the RIO from this frame's tags, null to use the Limelight's botpose
+     * @param alliance picks the Limelight botpose origin, red uses the red wall (wpiRed)
+     */
+    public Frame(long sequence, double timestamp, Results results, AprilTagPoseSolver solver, Alliance alliance) {
+      this.sequence = sequence;
+      this.timestamp = timestamp;
+      this.results = results;
+
+      LimelightTarget_Fiducial[] tags = results.targets_Fiducials;
+      if (tags.length > 0) {
+        tx = tags[0].tx;
+        ty = tags[0].ty;
+      } else if (results.targets_Retro.length > 0) {
+        tx = results.targets_Retro[0].tx;
+        ty = results.targets_Retro[0].ty;
+      } else {
+        tx = 0;
+        ty = 0;
+      }
+      hasTarget = results.valid && (tags.length > 0 || results.targets_Retro.length > 0);
+
+      if (solver != null) {
+        tagCount = solver.getTagCount();
+        averageTagDistance = solver.getAverageDistance();
+        botPose = tagCount > 0 ? new Pose2d(solver.getX(), solver.getY(), new Rotation2d(solver.getHeading())) : null;
+        return;
+      }
+      double distance = 0;
+      for (LimelightTarget_Fiducial tag : tags) {
+        distance += tag.getTargetPose_CameraSpace().getTranslation().getNorm();
+      }
+      tagCount = tags.length;
+      averageTagDistance = tags.length > 0 ? distance / tags.length : 0;
+      if (tags.length == 0) {
+        botPose = null;
+      } else if (alliance == Alliance.Red) {
+        botPose = results.getBotPose2d_wpiRed();
+      } else {
+        botPose = results.getBotPose2d_wpiBlue();
+      }
+    }
+  }
+
+  private static final class Camera {
+    final String name;
+    final StringSubscriber json;
+    final ExecutorService worker;
+    final AtomicReference<Frame> latest = new AtomicReference<>(Frame.none);
+    final AtomicBoolean parsePending = new AtomicBoolean(false);
+    final AprilTagPoseSolver solver; //null when using the Limelight's botpose, worker only
+    final StringLogEntry jsonLog; //null when not recording
+    final DoubleArrayLogEntry frameLog;
+    final double[] frameRecord = new double[7]; //worker only
+    volatile boolean reducedRate = false;
+    volatile double heading = 0; //robot heading for the solver, radians, set every loop
+
+    long framesSeen = 0; //NT listener thread only
+    double lastPublish = Double.NaN; //worker only
+    long lastFused = 0; //main thread only
+
+    Camera(String name, AprilTagPoseSolver solver) {
+      this.name = name;
+      this.solver = solver;
+      if (Constants.kVision.recordFrames) {
+        this.jsonLog = new StringLogEntry(DataLogManager.getLog(), jsonEntry(name));
+        this.frameLog = new DoubleArrayLogEntry(DataLogManager.getLog(), frameEntry(name));
+      } else {
+        this.jsonLog = null;
+        this.frameLog = null;
+      }
+      this.json = NetworkTableInstance.getDefault().getTable(name).getStringTopic("json").subscribe("");
+      this.worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Vision-" + name);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  private final Swerve swerve;
+  private final Camera[] cameras;
+
+  public boolean isInInfoMode = false;
+
+  public VisionSubsystem(Swerve swerve) {
+    this.swerve = swerve;
+    cameras = new Camera[Constants.kVision.cameras.length];
+    for (int i = 0; i < cameras.length; i++) {
+      Camera camera = new Camera(Constants.kVision.cameras[i], Constants.kVision.useRioSolver ? new AprilTagPoseSolver(i) : null);
+      cameras[i] = camera;
+      LimelightHelpers.setPipelineIndex(camera.name, Constants.kVision.pipelines[i]);
+
+      NetworkTableInstance.getDefault().addListener(
+          camera.json,
+          EnumSet.of(NetworkTableEvent.Kind.kValueAll),
+          event -> onNewFrame(camera));
+    }
+  }
+
+  //NT listener thread, keep it short. A frame that arrives while one is queued is picked up by that parse.
+  private static void onNewFrame(Camera camera) {
+    camera.framesSeen++;
+    if (camera.reducedRate && camera.framesSeen % Constants.kVision.reducedRatePeriod != 0) {
+      return;
+    }
+    if (camera.parsePending.compareAndSet(false, true)) {
+      camera.worker.execute(() -> parse(camera));
+    }
+  }
+
+  //Camera worker thread
+  private static void parse(Camera camera) {
+    camera.parsePending.set(false);
+    TimestampedString json = camera.json.getAtomic();
+    if (json.value.isEmpty()) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    Results results = parseResults(json.value);
+    if (results == null) {
+      AsyncLog.log("Vision: bad json from " + camera.name);
+      return;
+    }
+    results.latency_jsonParse = (System.nanoTime() - start) * 1e-6;
+
+    //Same frame published again, the Limelight timestamp only changes with a new image
+    if (results.timestamp_LIMELIGHT_publish == camera.lastPublish) {
+      return;
+    }
+    camera.lastPublish = results.timestamp_LIMELIGHT_publish;
+
+    Alliance alliance = DriverStation.getAlliance();
+    AprilTagPoseSolver solver = camera.solver;
+    if (solver != null) {
+      solver.begin(camera.heading, alliance);
+      for (LimelightTarget_Fiducial tag : results.targets_Fiducials) {
+        solver.addTag(tag);
+      }
+      solver.solve();
+    }
+
+    double captureTime = json.timestamp * 1e-6 - (results.latency_pipeline + results.latency_capture) / 1000.0;
+    Frame frame = new Frame(camera.latest.get().sequence + 1, captureTime, results, solver, alliance);
+    camera.latest.set(frame);
+    record(camera, json, frame);
+  }
+
+  /**
+   * Writes the raw json and what was made of it to the data log, one record per new frame. DataLog
+   * only copies into its buffer here, its own thread writes the file.
+   */
+  private static void record(Camera camera, TimestampedString json, Frame frame) {
+    if (camera.jsonLog == null) {
+      return;
+    }
+    double[] record = camera.frameRecord;
+    record[0] = frame.timestamp;
+    record[1] = frame.results.timestamp_LIMELIGHT_publish;
+    record[2] = frame.botPose != null ? frame.botPose.getX() : Double.NaN;
+    record[3] = frame.botPose != null ? frame.botPose.getY() : Double.NaN;
+    record[4] = frame.botPose != null ? frame.botPose.getRotation().getDegrees() : Double.NaN;
+    record[5] = frame.tagCount;
+    record[6] = frame.averageTagDistance;
+    camera.jsonLog.append(json.value, json.timestamp);
+    camera.frameLog.append(record, json.timestamp);
+  }
+
+  /**
+   * @return the json dump parsed, null if it isn't valid
+   */
+  public static Results parseResults(String json) {
+    try {
+      return mapper.readValue(json, LimelightHelpers.LimelightResults.class).targetingResults;
+    } catch (JsonProcessingException e) {
+      return null;
+    }
+  }
+
+  /** Data log entry with a camera's raw json, see {@link #frameEntry(String)} for what was made of it */
+  public static String jsonEntry(String camera) {
+    return "/vision/" + camera + "/json";
+  }
+
+  /** [capture time, Limelight timestamp, x, y, degrees (NaN without a pose), tag count, average tag distance] */
+  public static String frameEntry(String camera) {
+    return "/vision/" + camera + "/frame";
+  }
+
+  /**
+   * @return latest frame from a camera, {@link Frame#none} until the first one arrives
+   */
+  public Frame getFrame(int camera) {
+    return cameras[camera].latest.get();
+  }
+
+  public int getCameraCount() {
+    return cameras.length;
+  }
+
+  public void setPipeline(int camera, int pipeline) {
+    LimelightHelpers.setPipelineIndex(cameras[camera].name, pipeline);
+  }
+
+  @Override
+  public void periodic() {
+    boolean reducedRate = LoopBudget.isShed(Load.VISION_RATE);
+    double heading = swerve.getPose().getRotation().getRadians();
+    for (Camera camera : cameras) {
+      camera.reducedRate = reducedRate;
+      camera.heading = heading;
+    }
+    if (!LoopBudget.shouldRunVision()) {
+      return;
+    }
+
+    for (Camera camera : cameras) {
+      Frame frame = camera.latest.get();
+      if (frame.sequence == camera.lastFused) {
+        continue;
+      }
+      camera.lastFused = frame.sequence;
+      fuse(frame);
+
+      if (isInInfoMode && !LoopBudget.isShed(Load.INFO_TELEMETRY)) {
+        SmartDashboard.putNumber("Vision: " + camera.name + " Tags", frame.tagCount);
+        SmartDashboard.putNumber("Vision: " + camera.name + " Parse ms", frame.results.latency_jsonParse);
+      }
+    }
+  }
+
+  private void fuse(Frame frame) {
+    //Disabled it can pull the pose anywhere, that's how the robot finds itself before auto
+    if (isUsable(frame, swerve.getPose(), DriverStation.isEnabled())) {
+      swerve.addVisionMeasurement(frame.botPose, frame.timestamp,
+          stdDevs(frame, Constants.kVision.xyStdDev, Constants.kVision.thetaStdDev));
+    }
+  }
+
+  /**
+   * Whether a frame's pose should go into the pose estimator, shared with the offline replay.
+   * @param checkJump drop poses more than {@link Constants.kVision#maxPoseJump} from the current one
+   */
+  public static boolean isUsable(Frame frame, Pose2d current, boolean checkJump) {
+    if (frame.botPose == null) {
+      return false;
+    }
+    if (frame.tagCount == 1 && frame.averageTagDistance > Constants.kVision.maxTagDistance) {
+      return false;
+    }
+    return !checkJump || frame.botPose.getTranslation().getDistance(current.getTranslation()) <= Constants.kVision.maxPoseJump;
+  }
+
+  /**
+   * @param xyStdDev meters at 1 m from a single tag
+   * @param thetaStdDev degrees at 1 m from a single tag
+   */
+  public static Matrix<N3, N1> stdDevs(Frame frame, double xyStdDev, double thetaStdDev) {
+    double scale = (1 + frame.averageTagDistance * frame.averageTagDistance) / frame.tagCount;
+    return VecBuilder.fill(xyStdDev * scale, xyStdDev * scale, Math.toRadians(thetaStdDev) * scale);
+  }
+}
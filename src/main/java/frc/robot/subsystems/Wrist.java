@@ -7,27 +7,50 @@ package frc.robot.subsystems;
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.DemandType;
 import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.TalonFXSimCollection;
 import com.ctre.phoenix.motorcontrol.can.WPI_TalonFX;
 
+import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.controller.ArmFeedforward;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
 import edu.wpi.first.wpilibj2.command.*;
 import frc.robot.Constants;
+import frc.robot.CurrentBudget;
+import frc.robot.CurrentBudget.Group;
+import frc.robot.sim.RobotSim;
 
-public class Wrist extends SubsystemBase {
+public class Wrist extends MechanismBase {
   /** Creates a new Wrist. */
   private final WPI_TalonFX wrist = new WPI_TalonFX(Constants.kIntake.wrist);
   private double kP = 0.0300; //was 0.02 as of tech valley
-  private boolean isInInfoMode = true;
 
-  ArmFeedforward wristFeedforward = new ArmFeedforward(-0.6, 0, 0);
+  ArmFeedforward wristFeedforward = new ArmFeedforward(0, Constants.kWrist.kG, 0);
 
   public final double kWristDropPosition = 52500;
   public final double kWristRestPosition = 0;
 
   public double holdPosition = 0;
 
+  //Last position setpoint sent to the Talon, NaN while running open loop
+  private double lastSetpoint = Double.NaN;
+
+  /* Snapshot, read once per loop in readSensors() */
+  private double encoderCount = 0;
+  private boolean isRevLimitClosed = false;
+
+  private final BooleanPublisher limitPub = publishBoolean("Wrist: Limit Switch Engaged?");
+  private final DoublePublisher encoderPub = publishDouble("Wrist: Encoder Count");
+
+  /* Simulation, up positive from horizontal (wrist counts grow as it swings down) */
+  private SingleJointedArmSim wristSim;
+
   public Wrist() {
+    isInInfoMode = true;
 
     setWristEncoder(0);
 
@@ -42,34 +65,60 @@ public class Wrist extends SubsystemBase {
     wrist.setNeutralMode(NeutralMode.Brake);
     wrist.config_kP(0, kP);
     wrist.configAllowableClosedloopError(0, 100);  //allowable error or not to keep motor goin
+    wrist.configClearPositionOnLimitR(true, 0); //Talon zeros itself on the switch, see Homing
+
+    //Talon enforces the current limit itself so setSpeed doesn't need a CAN read first,
+    //kWrist's limit is the max CurrentBudget gives it
+    CurrentBudget.register(Group.WRIST, wrist);
   }
 
   public Command moveWristToPosition_Command(double distance) {
     return new RunCommand(
-        () -> this.wrist.set(ControlMode.Position, distance, DemandType.ArbitraryFeedForward, -0.02),
+        () -> this.holdPosition(distance),
         this);
   }
 
+  /**
+   * Runs position hold on the Talon (1 kHz loop, slot 0 kP) with gravity feed-forward.
+   * Only talks to the Talon when the setpoint actually changes, so calling this every loop is free.
+   * @param count encoder count to hold
+   */
+  public void holdPosition(double count){
+    if(count != lastSetpoint){
+      wrist.set(ControlMode.Position, count, DemandType.ArbitraryFeedForward, getGravityFeedforward(count));
+      lastSetpoint = count;
+    }
+  }
+
+  /**
+   * Feed-forward is computed from the setpoint, not the measured position, so it stays constant while holding.
+   * @return percent output needed to hold the wrist against gravity at the given count
+   */
+  public double getGravityFeedforward(double count){
+    double angle = Math.toRadians(count / Constants.kWrist.countsPerDegree + Constants.kWrist.horizontalOffsetDegrees);
+    return wristFeedforward.calculate(angle, 0) / 12.0;
+  }
+
   /**
    * 
    * @param count Should be set to Constants.kIntake.maxEncoder to extend, and some minimum value to retract, ideally 0.  <- Bridgwood: I like it! Minn value basically 0 and when it hits limit switch it will instantly get to 0 and stop 
    */
   public void setDesiredCount(double count){
-    wrist.set(ControlMode.Position, count);
+    holdPosition(count);
   }
 
   public void setSpeed(double speed){
-    if(wrist.getSupplyCurrent() <= 40){
-      wrist.set(speed);
-    }
+    lastSetpoint = Double.NaN;
+    wrist.set(speed);
   }
   
   public void setWristEncoder(double count){
     wrist.getSensorCollection().setIntegratedSensorPosition(count, 0);
+    encoderCount = count;
   }
 
   public double getWristEncoder(){
-    return wrist.getSelectedSensorPosition();
+    return encoderCount;
   }
 
   public void setHoldPosition(double count){
@@ -81,7 +130,7 @@ public class Wrist extends SubsystemBase {
   }
 
   public boolean isLimitSwithEngaged(){
-    return wrist.getSensorCollection().isRevLimitSwitchClosed() == 1;
+    return isRevLimitClosed;
   }
   
   /**
@@ -93,23 +142,45 @@ public class Wrist extends SubsystemBase {
   // }
 
   @Override
-  public void periodic() {
-    if(isInInfoMode){
-      // kP = SmartDashboard.getNumber("Wrist kP", kP);
-      // kI = SmartDashboard.getNumber("Wrist kI", kI);
-      // kD = SmartDashboard.getNumber("Wrist kD", kD);
-      // kF = SmartDashboard.getNumber("Wrist kF", kF);
-      SmartDashboard.putBoolean("Wrist: Limit Switch Engaged?", isLimitSwithEngaged());
-      SmartDashboard.putNumber("Wrist: Encoder Count", getWristEncoder());
-    }
+  protected void readSensors() {
+    encoderCount = wrist.getSelectedSensorPosition();
+    isRevLimitClosed = wrist.isRevLimitSwitchClosed() == 1;
+  }
 
-    if(isLimitSwithEngaged()){
-        setWristEncoder(0);
+  @Override
+  protected void publish() {
+    if(isInfoEnabled()){
+      limitPub.set(isRevLimitClosed);
+      encoderPub.set(encoderCount);
     }
+  }
 
-   // wristFeedforward.calculate()
-  //  if(wrist.getMotorOutputPercent() == 0){
-  //     wrist.set();
-  //  }
+  @Override
+  public void simulationPeriodic() {
+    double stowedRads = -Math.toRadians(Constants.kWrist.horizontalOffsetDegrees);
+    if(wristSim == null){
+      wristSim = new SingleJointedArmSim(
+        DCMotor.getFalcon500(1),
+        Constants.kWrist.gearRatio,
+        SingleJointedArmSim.estimateMOI(Constants.kWrist.lengthMeters, Constants.kWrist.massKg),
+        Constants.kWrist.lengthMeters,
+        stowedRads - Math.PI,
+        stowedRads,
+        true);
+      wristSim.setState(VecBuilder.fill(stowedRads, 0));
+    }
+    TalonFXSimCollection wristSimState = wrist.getSimCollection();
+    wristSimState.setBusVoltage(RobotController.getBatteryVoltage());
+
+    //Motor is inverted and counts grow downward, the two flips cancel so raw output is already "up positive"
+    wristSim.setInputVoltage(wristSimState.getMotorOutputLeadVoltage());
+    wristSim.update(TimedRobot.kDefaultPeriod);
+
+    double rawDegrees = Math.toDegrees(wristSim.getAngleRads() - stowedRads);
+    wristSimState.setIntegratedSensorRawPosition((int) (rawDegrees * Constants.kWrist.countsPerDegree));
+    wristSimState.setIntegratedSensorVelocity((int) (Math.toDegrees(wristSim.getVelocityRadPerSec()) * Constants.kWrist.countsPerDegree / 10.0));
+    wristSimState.setLimitRev(wristSim.hasHitUpperLimit());
+    wristSimState.setSupplyCurrent(wristSim.getCurrentDrawAmps());
+    RobotSim.addCurrent(wristSim.getCurrentDrawAmps());
   }
 }
@@ -0,0 +1,79 @@
+package frc.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+
+/**
+ * The slew stage against the paused HAL clock, so dt is exactly what each test steps.
+ */
+class AxisShaperTest {
+    private static final double dt = 0.02;
+    private static final double tolerance = 1e-9;
+
+    @BeforeAll
+    static void initializeHal() {
+        HAL.initialize(500, 0);
+        SimHooks.pauseTiming();
+    }
+
+    @Test
+    void unslewedFollowsInput() {
+        //Like the telescope and arm shapers, no slew() so both rates are infinite
+        AxisShaper shaper = new AxisShaper().exponent(2).scale(0.5);
+        double[] inputs = {1, -1, 0.5, 0, -0.3};
+        for (double input : inputs) {
+            assertEquals(shaper.shape(input, false), shaper.calculate(input), tolerance);
+            SimHooks.stepTiming(dt);
+        }
+    }
+
+    @Test
+    void unslewedFirstSample() {
+        //First call has no last time, the second is at the same timestamp, dt is 0 for both
+        AxisShaper shaper = new AxisShaper();
+        assertEquals(1, shaper.calculate(1), tolerance);
+        assertEquals(-1, shaper.calculate(-1), tolerance);
+    }
+
+    @Test
+    void slewedFirstSampleTakesTheTarget() {
+        AxisShaper shaper = new AxisShaper().slew(1, 2);
+        assertEquals(0.8, shaper.calculate(0.8), tolerance);
+
+        SimHooks.stepTiming(dt);
+        assertEquals(0.8 - 2 * dt, shaper.calculate(0), tolerance);
+    }
+
+    @Test
+    void slewedAfterReset() {
+        AxisShaper shaper = new AxisShaper().slew(1, 2);
+        shaper.calculate(0);
+        SimHooks.stepTiming(dt);
+        assertEquals(1 * dt, shaper.calculate(1), tolerance);
+
+        shaper.reset(0);
+        assertEquals(1, shaper.calculate(1), tolerance);
+    }
+
+    @Test
+    void limitWithoutRateOrTime() {
+        double inf = Double.POSITIVE_INFINITY;
+        assertEquals(0.7, AxisShaper.limit(0, 0.7, 0, inf, inf), tolerance);
+        assertEquals(0.7, AxisShaper.limit(0, 0.7, dt, inf, inf), tolerance);
+        assertEquals(0.7, AxisShaper.limit(0, 0.7, 0, 1, 1), tolerance);
+        assertEquals(-0.4, AxisShaper.limit(0.9, -0.4, -dt, 1, 1), tolerance);
+    }
+
+    @Test
+    void limitAcceleratesAndDecelerates() {
+        assertEquals(0.1, AxisShaper.limit(0, 1, 0.1, 1, 2), tolerance);
+        assertEquals(0.8, AxisShaper.limit(1, 0, 0.1, 1, 2), tolerance);
+        //Reversing counts as slowing down
+        assertEquals(0.3, AxisShaper.limit(0.5, -1, 0.1, 1, 2), tolerance);
+    }
+}
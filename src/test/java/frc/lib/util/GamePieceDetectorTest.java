@@ -0,0 +1,222 @@
+package frc.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import frc.lib.util.GamePieceDetector.GamePiece;
+import frc.robot.Constants.kIntake;
+
+/**
+ * Replays synthesized roller traces through the detector with the robot's thresholds. There are no
+ * logged intake traces in the repo yet, so these follow what the intake Falcons log: an inrush
+ * spike that decays while the rollers come up to speed, free running at a few amps, then current
+ * ramping up and speed dropping over a few loops as a piece is pulled in (harder for a cone).
+ * The levels sit well clear of the thresholds rather than just past them, each trace gets its
+ * own load from the seeded random, and every sample gets noise on the order of what the stator
+ * current and velocity signals show, so a pass doesn't depend on the exact numbers.
+ */
+class GamePieceDetectorTest {
+    private static final double dt = 0.02;
+    private static final double output = 0.6; //IntakeTeleopCommand
+
+    //Ramp, window to fill, debounce, and a loop of slack
+    private static final double loadRamp = 0.08;
+    private static final double maxLatency = loadRamp + kIntake.detectionWindow * dt + kIntake.detectionDebounce + 2 * dt;
+
+    private static final double currentNoise = 2.5; //amps, standard deviation
+    private static final double speedNoise = 0.06; //fraction of speed, standard deviation
+
+    private static final double freeCurrent = 5;
+    private static final double freeRatio = 0.95;
+    private static final double inrushCurrent = 60;
+    private static final double inrushTime = 0.25;
+    //Loaded levels, each trace picks its own within +- spread
+    private static final double cubeCurrent = 24;
+    private static final double cubeRatio = 0.45;
+    private static final double coneCurrent = 42;
+    private static final double coneRatio = 0.15;
+    private static final double loadSpread = 0.1;
+
+    private GamePieceDetector detector;
+    private Random noise;
+    private double time;
+
+    @BeforeEach
+    void setup() {
+        detector = new GamePieceDetector(kIntake.rollerFreeSpeed, kIntake.cubeCurrent, kIntake.coneCurrent,
+            kIntake.cubeSpeedRatio, kIntake.coneSpeedRatio, kIntake.detectionWindow, kIntake.spinUpTime, kIntake.detectionDebounce);
+        noise = new Random(3950);
+        time = 0;
+    }
+
+    @Test
+    void noFalsePositiveDuringSpinUp() {
+        assertFalse(spinUp(1.0), "Detected a piece while the rollers spun up and ran empty");
+    }
+
+    @Test
+    void noFalsePositiveOnRestart() {
+        spinUp(0.5);
+        run(0, 0, 0, 0.2);
+        assertFalse(spinUp(0.5), "Detected a piece on the second spin up");
+    }
+
+    @Test
+    void noFalsePositiveOnBrush() {
+        //Rollers glancing off a piece or the carpet: a few loops of current without much drop in speed
+        spinUp(0.5);
+        boolean fired = false;
+        for (int brush = 0; brush < 5; brush++) {
+            for (int i = 0; i < 3; i++) {
+                fired |= sample(output, 35, 0.75);
+            }
+            for (int i = 0; i < 15; i++) {
+                fired |= sample(output, freeCurrent, freeRatio);
+            }
+        }
+        assertFalse(fired, "Detected a piece from brushes");
+    }
+
+    @Test
+    void detectsCube() {
+        for (int trial = 0; trial < 10; trial++) {
+            spinUp(0.5);
+            double latency = load(vary(cubeCurrent), vary(cubeRatio), 0.5);
+            assertTrue(latency <= maxLatency, "Cube took " + latency + " s, limit " + maxLatency);
+            assertEquals(GamePiece.CUBE, detector.getGamePiece());
+            run(0, 0, 0, 0.2);
+        }
+    }
+
+    @Test
+    void detectsCone() {
+        for (int trial = 0; trial < 10; trial++) {
+            spinUp(0.5);
+            double latency = load(vary(coneCurrent), vary(coneRatio), 0.5);
+            assertTrue(latency <= maxLatency, "Cone took " + latency + " s, limit " + maxLatency);
+            assertEquals(GamePiece.CONE, detector.getGamePiece());
+            run(0, 0, 0, 0.2);
+        }
+    }
+
+    @Test
+    void pieceDuringSpinUpIsSeenAfterBlanking() {
+        //Driver already on top of a cube when the rollers start
+        double start = time;
+        double latency = Double.NaN;
+        while (time - start < 1.0) {
+            double t = time - start;
+            double current = t < inrushTime ? Math.max(cubeCurrent, inrushCurrent * (1 - t / inrushTime)) : cubeCurrent;
+            double ratio = Math.min(cubeRatio, freeRatio * t / inrushTime);
+            if (sample(output, current, ratio) && Double.isNaN(latency)) {
+                latency = t;
+            }
+        }
+        assertFalse(Double.isNaN(latency), "Never saw the cube");
+        assertTrue(latency >= kIntake.spinUpTime, "Detected before the spin up blanking ended");
+        assertTrue(latency <= kIntake.spinUpTime + maxLatency, "Cube took " + latency + " s after start");
+    }
+
+    @Test
+    void heldPieceStaysSeenAndSlipDrops() {
+        spinUp(0.5);
+        load(coneCurrent, coneRatio, 0.5);
+        assertTrue(detector.hasPiece());
+
+        //IntakeTeleopCommand drops to holdOutput, the cone stalls the rollers at the lower torque
+        boolean lost = false;
+        double start = time;
+        while (time - start < 1.0) {
+            lost |= !sample(kIntake.holdOutput, 34, 0.05);
+        }
+        assertFalse(lost, "Lost the held cone");
+        assertEquals(GamePiece.CONE, detector.getGamePiece());
+
+        //Cone slips out, the rollers run free at holdOutput
+        start = time;
+        double dropped = Double.NaN;
+        while (time - start < 0.5 && Double.isNaN(dropped)) {
+            if (!sample(kIntake.holdOutput, 2, freeRatio)) {
+                dropped = time - start;
+            }
+        }
+        assertFalse(Double.isNaN(dropped), "Still saw the cone after it slipped out");
+        assertTrue(dropped <= kIntake.detectionWindow * dt + dt, "Took " + dropped + " s to see the cone was gone");
+    }
+
+    @Test
+    void ejectClearsPiece() {
+        spinUp(0.5);
+        load(coneCurrent, coneRatio, 0.5);
+        assertTrue(detector.hasPiece());
+
+        sample(-output, coneCurrent, coneRatio);
+        assertFalse(detector.hasPiece());
+        assertEquals(GamePiece.NONE, detector.getGamePiece());
+    }
+
+    /** A piece's loaded level for one trace, within loadSpread of nominal */
+    private double vary(double nominal) {
+        return nominal * (1 + loadSpread * (2 * noise.nextDouble() - 1));
+    }
+
+    /**
+     * Starts the rollers from stopped and runs them empty.
+     * @return true if the detector fired at any point
+     */
+    private boolean spinUp(double duration) {
+        double start = time;
+        boolean fired = false;
+        while (time - start < duration) {
+            double t = time - start;
+            double current = t < inrushTime ? freeCurrent + (inrushCurrent - freeCurrent) * (1 - t / inrushTime) : freeCurrent;
+            double ratio = Math.min(freeRatio, freeRatio * t / inrushTime);
+            fired |= sample(output, current, ratio);
+        }
+        return fired;
+    }
+
+    /**
+     * Loads the running rollers with a piece, ramping from free running over loadRamp.
+     * @return seconds from the piece first touching the rollers to the detector firing, infinite if it never did
+     */
+    private double load(double current, double ratio, double duration) {
+        double start = time;
+        double latency = Double.POSITIVE_INFINITY;
+        while (time - start < duration) {
+            double t = time - start;
+            double ramp = Math.min(1, t / loadRamp);
+            double rampedCurrent = freeCurrent + (current - freeCurrent) * ramp;
+            double rampedRatio = freeRatio + (ratio - freeRatio) * ramp;
+            if (sample(output, rampedCurrent, rampedRatio) && latency == Double.POSITIVE_INFINITY) {
+                latency = t;
+            }
+        }
+        return latency;
+    }
+
+    private void run(double out, double current, double ratio, double duration) {
+        double start = time;
+        while (time - start < duration) {
+            sample(out, current, ratio);
+        }
+    }
+
+    /** One loop of both rollers, the lower slightly different from the upper like the real pair */
+    private boolean sample(double out, double current, double ratio) {
+        double speed = ratio * Math.abs(out) * kIntake.rollerFreeSpeed;
+        double upperCurrent = Math.max(0, current + currentNoise * noise.nextGaussian());
+        double lowerCurrent = Math.max(0, current * 0.9 + currentNoise * noise.nextGaussian());
+        double upperVelocity = speed * (1 + speedNoise * noise.nextGaussian());
+        double lowerVelocity = speed * (1.05 + speedNoise * noise.nextGaussian());
+        detector.update(out, upperCurrent, lowerCurrent, upperVelocity, lowerVelocity, time);
+        time += dt;
+        return detector.hasPiece();
+    }
+}
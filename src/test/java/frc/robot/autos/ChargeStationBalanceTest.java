@@ -0,0 +1,76 @@
+package frc.robot.autos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.Constants.kBalance;
+import frc.robot.sim.RobotSim;
+import frc.robot.sim.SimTestBase;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Drives the simulated swerve onto the simulated charge station (ChargeStationModel) and hands
+ * over to ChargeStationBalanceCommand, like the end of a balance auto. Fails if balancing gets
+ * slower than {@link #maxTimeToBalance} or the station is driven past level by more than
+ * {@link #maxOvershoot}.
+ */
+class ChargeStationBalanceTest extends SimTestBase {
+    private static final double maxTimeToBalance = 8.0; //seconds from the hand over
+    private static final double maxOvershoot = 5.0; //degrees past level, on the far side from where it started
+    private static final double handOverRoll = 10.0; //degrees, the ramp is down under the robot
+
+    private static final double startX = kBalance.stationCenterX - kBalance.stationHalfLength - 0.6;
+
+    private static Swerve swerve;
+
+    @BeforeAll
+    static void createSwerve() {
+        swerve = new Swerve();
+    }
+
+    /**
+     * @param approachSpeed fraction of max speed the robot drives up the ramp at
+     */
+    @ParameterizedTest(name = "approach at {0}")
+    @ValueSource(doubles = {0.15, 0.25, 0.35})
+    void balances(double approachSpeed) {
+        setMode(true, true);
+        for (int i = 0; i < 50; i++) {
+            swerve.drive(new Translation2d(), 0, true, true);
+            step();
+        }
+        swerve.configYaw(0);
+        swerve.resetOdometry(new Pose2d(startX, 0, new Rotation2d()));
+        RobotSim.resetChargeStation();
+
+        swerve.driveHorizontal(approachSpeed);
+        double approachTime = stepUntil(() -> Math.abs(swerve.getRoll()) > handOverRoll, 5.0);
+        assertFalse(Double.isNaN(approachTime), "Never got onto the station, x = " + swerve.getPose().getX());
+
+        double startSign = Math.signum(swerve.getRoll());
+        double[] overshoot = {0};
+        ChargeStationBalanceCommand balance = new ChargeStationBalanceCommand(swerve);
+        balance.schedule();
+        double time = stepUntil(() -> {
+            double roll = swerve.getRoll();
+            if (Math.signum(roll) == -startSign) {
+                overshoot[0] = Math.max(overshoot[0], Math.abs(roll));
+            }
+            return !balance.isScheduled();
+        }, maxTimeToBalance);
+
+        assertFalse(Double.isNaN(time), "Not balanced after " + maxTimeToBalance + " s, roll " + swerve.getRoll());
+        assertEquals(time, balance.getTimeToBalance(), 2 * dt);
+        assertTrue(overshoot[0] < maxOvershoot, "Drove the station " + overshoot[0] + " degrees past level");
+        assertTrue(Math.abs(RobotSim.getChargeStationAngle()) < kBalance.levelTolerance,
+            "Finished with the station at " + RobotSim.getChargeStationAngle() + " degrees");
+    }
+}
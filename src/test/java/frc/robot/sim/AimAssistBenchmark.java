@@ -0,0 +1,145 @@
+package frc.robot.sim;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants.kAim;
+import frc.robot.Constants.kGrid;
+import frc.robot.LimelightHelpers.LimelightTarget_Retro;
+import frc.robot.LimelightHelpers.Results;
+import frc.robot.commands.TeleopSwerve;
+import frc.robot.subsystems.Swerve;
+import frc.robot.subsystems.VisionSubsystem.Frame;
+
+/**
+ * Settle time of TeleopSwerve's aim assist against a simulated Limelight: a target at the center
+ * grid node, frames at the camera's rate with its latency and tx noise, seen from the robot's
+ * simulated heading at capture time. Each case starts off target by some angle, optionally with
+ * the driver strafing, and reports how long until the heading stays within
+ * {@link kAim#settleTolerance} of the true bearing.
+ *
+ * <p>Run with {@code ./gradlew aimBenchmark}, paced to real time like AutoRegressionTest,
+ * {@code -PmaxSpeedup=N} runs it up to N times faster (0 for unpaced).
+ */
+public final class AimAssistBenchmark extends SimTestBase {
+    private static final double framePeriod = 1.0 / 22; //Limelight 2+ AprilTag/retro pipeline rate
+    private static final double latency = 0.045; //pipeline + capture, seconds
+    private static final double txNoise = 0.5; //degrees
+    private static final double settleHold = 0.25; //seconds inside tolerance to count as settled
+    private static final double timeout = 3.0;
+
+    private static final Translation2d target = new Translation2d(0.36, kGrid.nodeY[4]);
+    private static final double[] startOffsets = {10, 30, 60, 120}; //degrees off the target
+    private static final double[] strafes = {0, 0.4}; //stick
+
+    private AimAssistBenchmark() {}
+
+    private static final class PendingFrame {
+        final double captureTime;
+        final double tx;
+
+        PendingFrame(double captureTime, double tx) {
+            this.captureTime = captureTime;
+            this.tx = tx;
+        }
+    }
+
+    public static void main(String[] args) {
+        double maxSpeedup = parseMaxSpeedup(args);
+        initializeSim();
+        setMode(true, false);
+
+        Swerve swerve = new Swerve();
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%8s %7s %10s %12s %12s", "Offset", "Strafe", "Settle(s)", "Overshoot", "Final(deg)"));
+        for (double strafe : strafes) {
+            for (double offset : startOffsets) {
+                lines.add(run(swerve, offset, strafe, maxSpeedup));
+            }
+        }
+
+        System.out.println();
+        lines.forEach(System.out::println);
+        HAL.shutdown();
+        System.exit(0);
+    }
+
+    private static String run(Swerve swerve, double offset, double strafe, double maxSpeedup) {
+        CommandScheduler scheduler = CommandScheduler.getInstance();
+        scheduler.cancelAll();
+
+        Translation2d start = new Translation2d(3.0, kGrid.nodeY[4] - 1.0);
+        double startHeading = target.minus(start).getAngle().getDegrees() + offset;
+        swerve.configYaw(startHeading);
+        swerve.resetOdometry(new Pose2d(start, Rotation2d.fromDegrees(startHeading)));
+
+        Random noise = new Random(42);
+        ArrayDeque<PendingFrame> inFlight = new ArrayDeque<>();
+        Frame[] published = {Frame.none};
+        TeleopSwerve teleop = new TeleopSwerve(swerve, () -> 0, () -> strafe, () -> 0, () -> false,
+            () -> true, () -> published[0]);
+        teleop.schedule();
+
+        double startTime = Timer.getFPGATimestamp();
+        double nextFrame = startTime;
+        double settledAt = Double.NaN;
+        double overshoot = 0;
+        double error = offset;
+        while (Timer.getFPGATimestamp() - startTime < timeout) {
+            double now = Timer.getFPGATimestamp();
+            Pose2d pose = swerve.getPose();
+            double bearing = target.minus(pose.getTranslation()).getAngle().getDegrees();
+            error = MathUtil.inputModulus(pose.getRotation().getDegrees() - bearing, -180, 180);
+
+            //The camera sees the robot as it is now, the RIO gets it a latency later
+            if (now >= nextFrame) {
+                inFlight.add(new PendingFrame(now, error + noise.nextGaussian() * txNoise));
+                nextFrame += framePeriod;
+            }
+            while (!inFlight.isEmpty() && inFlight.peek().captureTime + latency <= now) {
+                PendingFrame frame = inFlight.poll();
+                published[0] = new Frame(published[0].sequence + 1, frame.captureTime, retroResult(frame.tx));
+            }
+
+            //Heading error is positive left of the target, tx is positive right of the camera
+            if (Math.signum(error) != Math.signum(offset)) {
+                overshoot = Math.max(overshoot, Math.abs(error));
+            }
+            if (Math.abs(error) < kAim.settleTolerance) {
+                if (Double.isNaN(settledAt)) {
+                    settledAt = now - startTime;
+                } else if (now - startTime - settledAt >= settleHold) {
+                    break;
+                }
+            } else {
+                settledAt = Double.NaN;
+            }
+
+            pacedStep(maxSpeedup);
+        }
+        teleop.cancel();
+
+        return String.format("%8.0f %7.1f %10s %12.2f %12.2f",
+            offset, strafe, Double.isNaN(settledAt) ? "never" : String.format("%.2f", settledAt), overshoot, error);
+    }
+
+    private static Results retroResult(double tx) {
+        Results results = new Results();
+        LimelightTarget_Retro retro = new LimelightTarget_Retro();
+        retro.tx = tx;
+        results.targets_Retro = new LimelightTarget_Retro[] {retro};
+        results.valid = true;
+        results.latency_pipeline = latency * 1000;
+        return results;
+    }
+}
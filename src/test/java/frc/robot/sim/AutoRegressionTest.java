@@ -0,0 +1,177 @@
+package frc.robot.sim;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.EventMarker;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.lib.util.TrajectoryService;
+import frc.robot.RobotContainer;
+
+/**
+ * Headless autonomous regression. Builds the real RobotContainer against the sim, then runs every
+ * chooser auto by stepping the loop with the HAL clock paused.
+ * Each auto has to finish, reach the last path's end pose and fire every event its paths
+ * reference within the 15 second auto period, or its test fails.
+ * With {@code -PautoBaseline} each auto is also run a second time stopped at every stop event,
+ * to report how much time the overlapped stop events save.
+ *
+ * <p>Run with {@code ./gradlew autoRegression}, or {@code -Pautos="name,name"} for a subset. It's
+ * kept out of {@code ./gradlew test}. Phoenix sim devices close their loops on their own wall
+ * clock, so the loop is paced to real time against the HAL clock by default, {@code -PmaxSpeedup=N}
+ * runs it up to N times faster (0 for unpaced) at the cost of tracking that's worse than on the field.
+ */
+class AutoRegressionTest extends SimTestBase {
+    private static final double autoLength = 15.0;
+    private static final double positionTolerance = 0.15; //meters
+    private static final double headingTolerance = 10.0; //degrees
+
+    private static final double maxSpeedup = Double.parseDouble(System.getProperty("maxSpeedup", "1")); //0 = as fast as it will step
+    private static final boolean baseline = System.getProperty("autoBaseline") != null;
+
+    private static RobotContainer container;
+    private static final List<Result> results = new ArrayList<>();
+
+    private static final class Result {
+        String name;
+        boolean finished;
+        double time;
+        double positionError;
+        double headingError;
+        Set<String> missedEvents = new LinkedHashSet<>();
+        //Same auto stopped for every stop event, NaN if it wasn't run or didn't finish
+        double baselineTime = Double.NaN;
+
+        String saved() {
+            return finished && !Double.isNaN(baselineTime) ? String.format("%.2f", baselineTime - time) : "-";
+        }
+
+        boolean passed() {
+            return finished && time <= autoLength
+                && positionError <= positionTolerance && headingError <= headingTolerance && missedEvents.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-52s %-6s %8s %8s %8.3f %8.2f  %s",
+                name,
+                passed() ? "PASS" : "FAIL",
+                finished ? String.format("%.2f", time) : "running",
+                saved(),
+                positionError,
+                headingError,
+                missedEvents.isEmpty() ? "-" : String.join(", ", missedEvents));
+        }
+    }
+
+    @BeforeAll
+    static void createContainer() {
+        //Blue so the paths aren't mirrored and the end poses compare directly, disabled like before a match
+        setMode(false, true);
+        container = new RobotContainer();
+        while (!TrajectoryService.isIdle()) {
+            Thread.onSpinWait();
+        }
+        container.warmAutos();
+    }
+
+    @AfterAll
+    static void printSummary() {
+        System.out.println(String.format("%-52s %-6s %8s %8s %8s %8s  %s", "Auto", "Result", "Time", "Saved", "Pos(m)", "Rot(deg)", "Missed events"));
+        results.forEach(System.out::println);
+    }
+
+    /** Every chooser auto, or the ones named in -Pautos */
+    static Stream<String> autos() {
+        String only = System.getProperty("autos", "");
+        List<String> names = Arrays.asList(only.split(","));
+        return container.getAutoCommands().keySet().stream()
+            .filter(name -> only.isBlank() || names.contains(name));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("autos")
+    void autoCompletes(String name) {
+        List<PathPlannerTrajectory> paths = container.getAutoPaths().get(name).join();
+        Result result = run(name, container.getAutoCommands().get(name), paths);
+        if (baseline) {
+            Result sequential = run(name, container.buildAuto(name, false), paths);
+            if (sequential.finished) {
+                result.baselineTime = sequential.time;
+            }
+        }
+        results.add(result);
+
+        assertTrue(result.passed(), result.toString());
+    }
+
+    private static Result run(String name, Command auto, List<PathPlannerTrajectory> paths) {
+        Result result = new Result();
+        result.name = name;
+
+        //Let the mechanisms settle back at rest between autos, disabled like on the field
+        setMode(false, true);
+        CommandScheduler.getInstance().cancelAll();
+        resetPacing();
+        for (int i = 0; i < 50; i++) {
+            pacedStep(maxSpeedup);
+        }
+
+        container.clearFiredEvents();
+        setMode(true, true);
+        auto.schedule();
+
+        double time = 0;
+        while (time < autoLength) {
+            pacedStep(maxSpeedup);
+            time += dt;
+            if (!auto.isScheduled()) {
+                result.finished = true;
+                break;
+            }
+        }
+        result.time = time;
+        auto.cancel();
+
+        PathPlannerState end = paths.get(paths.size() - 1).getEndState();
+        Pose2d pose = container.s_Swerve.getPose();
+        result.positionError = pose.getTranslation().getDistance(end.poseMeters.getTranslation());
+        result.headingError = Math.abs(pose.getRotation().minus(end.holonomicRotation).getDegrees());
+
+        for (String event : expectedEvents(paths)) {
+            if (container.getEventMap().containsKey(event) && !container.getFiredEvents().contains(event)) {
+                result.missedEvents.add(event);
+            }
+        }
+        return result;
+    }
+
+    /** Every marker and stop event name the path group references, in path order. */
+    private static Set<String> expectedEvents(List<PathPlannerTrajectory> paths) {
+        Set<String> events = new LinkedHashSet<>();
+        for (PathPlannerTrajectory path : paths) {
+            events.addAll(path.getStartStopEvent().names);
+            for (EventMarker marker : path.getMarkers()) {
+                events.addAll(marker.names);
+            }
+            events.addAll(path.getEndStopEvent().names);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,170 @@
+package frc.robot.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Commands;
+import frc.robot.Constants;
+import frc.robot.commands.TeleopSwerve;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Drives the same scripted stick inputs through TeleopSwerve's input shaping and through the
+ * plain deadband it used before, and compares how the simulated drivetrain responds:
+ * <ul>
+ * <li>smoothness: RMS chassis acceleration and jerk, and the peak acceleration</li>
+ * <li>battery: peak and mean drivetrain current</li>
+ * <li>distance covered, so a smoother run isn't just a slower one</li>
+ * </ul>
+ * The script is full stick steps, a hard reversal, a diagonal, rotation flicks and some stick
+ * noise, roughly what a driver does crossing the field and lining up.
+ *
+ * <p>Run with {@code ./gradlew inputShapingBenchmark}, paced to real time like AutoRegressionTest,
+ * {@code -PmaxSpeedup=N} runs it up to N times faster (0 for unpaced).
+ */
+public final class InputShapingBenchmark extends SimTestBase {
+    private static final double duration = 8.0;
+    private static final double stickNoise = 0.02;
+
+    private InputShapingBenchmark() {}
+
+    public static void main(String[] args) {
+        double maxSpeedup = parseMaxSpeedup(args);
+        initializeSim();
+        setMode(true, false);
+
+        Swerve swerve = new Swerve();
+
+        //Sticks are read through these, the script writes them each loop
+        double[] sticks = new double[3];
+
+        //What TeleopSwerve did before shaping
+        Command deadbandOnly = Commands.run(() -> swerve.drive(
+            new Translation2d(
+                MathUtil.applyDeadband(sticks[0], Constants.stickDeadband),
+                MathUtil.applyDeadband(sticks[1], Constants.stickDeadband)).times(Constants.kSwerve.maxSpeed),
+            MathUtil.applyDeadband(sticks[2], Constants.stickDeadband) * Constants.kSwerve.maxAngularVelocity,
+            true,
+            true), swerve);
+        Command shaped = new TeleopSwerve(swerve, () -> sticks[0], () -> sticks[1], () -> sticks[2], () -> false);
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-14s %11s %11s %11s %12s %12s %10s",
+            "Input", "Accel RMS", "Jerk RMS", "Peak accel", "Peak amps", "Mean amps", "Distance"));
+        lines.add(run("deadband only", swerve, deadbandOnly, sticks, maxSpeedup));
+        lines.add(run("shaped", swerve, shaped, sticks, maxSpeedup));
+
+        System.out.println();
+        lines.forEach(System.out::println);
+        HAL.shutdown();
+        System.exit(0);
+    }
+
+    private static String run(String name, Swerve swerve, Command command, double[] sticks, double maxSpeedup) {
+        CommandScheduler scheduler = CommandScheduler.getInstance();
+        scheduler.cancelAll();
+
+        //Let the last run coast to a stop
+        sticks[0] = sticks[1] = sticks[2] = 0;
+        for (int i = 0; i < 50; i++) {
+            swerve.drive(new Translation2d(), 0, true, true);
+            pacedStep(maxSpeedup);
+        }
+        swerve.configYaw(0);
+        swerve.resetOdometry(new Pose2d());
+
+        Random noise = new Random(42);
+        command.schedule();
+
+        double dt = TimedRobot.kDefaultPeriod;
+        double startTime = Timer.getFPGATimestamp();
+        double lastVx = 0, lastVy = 0;
+        double lastAx = 0, lastAy = 0;
+        double accelSquared = 0, jerkSquared = 0, peakAccel = 0;
+        double peakCurrent = 0, totalCurrent = 0;
+        double distance = 0;
+        Translation2d lastPosition = swerve.getPose().getTranslation();
+        int samples = 0;
+        while (Timer.getFPGATimestamp() - startTime < duration) {
+            script(Timer.getFPGATimestamp() - startTime, sticks);
+            sticks[0] += noise.nextGaussian() * stickNoise;
+            sticks[1] += noise.nextGaussian() * stickNoise;
+            sticks[2] += noise.nextGaussian() * stickNoise;
+
+            pacedStep(maxSpeedup);
+
+            ChassisSpeeds speeds = Constants.kSwerve.swerveKinematics.toChassisSpeeds(swerve.getModuleStates());
+            double ax = (speeds.vxMetersPerSecond - lastVx) / dt;
+            double ay = (speeds.vyMetersPerSecond - lastVy) / dt;
+            double jx = (ax - lastAx) / dt;
+            double jy = (ay - lastAy) / dt;
+            lastVx = speeds.vxMetersPerSecond;
+            lastVy = speeds.vyMetersPerSecond;
+            lastAx = ax;
+            lastAy = ay;
+
+            double accel = Math.hypot(ax, ay);
+            accelSquared += accel * accel;
+            jerkSquared += jx * jx + jy * jy;
+            peakAccel = Math.max(peakAccel, accel);
+
+            double current = RobotSim.getLastLoopCurrent();
+            peakCurrent = Math.max(peakCurrent, current);
+            totalCurrent += current;
+
+            Translation2d position = swerve.getPose().getTranslation();
+            distance += position.getDistance(lastPosition);
+            lastPosition = position;
+            samples++;
+        }
+        command.cancel();
+
+        return String.format("%-14s %11.2f %11.1f %11.2f %12.1f %12.1f %10.2f",
+            name,
+            Math.sqrt(accelSquared / samples),
+            Math.sqrt(jerkSquared / samples),
+            peakAccel,
+            peakCurrent,
+            totalCurrent / samples,
+            distance);
+    }
+
+    /**
+     * Stick positions (translation, strafe, rotation) at t seconds into the run.
+     */
+    private static void script(double t, double[] sticks) {
+        double translation = 0, strafe = 0, rotation = 0;
+        if (t < 0.5) {
+            //Resting thumb, inside the deadband
+        } else if (t < 2.0) {
+            translation = 1.0;
+        } else if (t < 2.5) {
+            translation = 0;
+        } else if (t < 3.5) {
+            translation = 1.0;
+        } else if (t < 4.5) {
+            translation = -1.0; //full reversal
+        } else if (t < 5.5) {
+            translation = 0.7;
+            strafe = 0.7;
+        } else if (t < 6.5) {
+            rotation = ((int) ((t - 5.5) / 0.25)) % 2 == 0 ? 1.0 : -1.0; //flicks
+        } else if (t < 7.5) {
+            translation = 0.3; //lining up
+            strafe = ((int) ((t - 6.5) / 0.2)) % 2 == 0 ? 0.2 : -0.2;
+        }
+        sticks[0] = translation;
+        sticks[1] = strafe;
+        sticks[2] = rotation;
+    }
+}
@@ -0,0 +1,144 @@
+package frc.robot.sim;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.CTREConfigs;
+import frc.robot.CurrentBudget;
+import frc.robot.Robot;
+
+/**
+ * Base for tests and the sim benchmarks that run robot code against the desktop sim. The HAL clock is paused for the
+ * whole class and only moves in {@link #step()}, which runs one loop in the order Robot does, so
+ * a test runs as fast as the loop can be stepped instead of in real time, or held to a multiple
+ * of real time with {@link #pacedStep(double)} where it depends on the Phoenix sim.
+ *
+ * <p>Every test class gets its own JVM (forkEvery in build.gradle), so the HAL, the scheduler's
+ * registered subsystems, the Phoenix sim devices and the static sim models all start fresh.
+ */
+public abstract class SimTestBase {
+    protected static final double dt = TimedRobot.kDefaultPeriod;
+
+    //Where pacedStep() started counting from, wall nanoseconds and HAL seconds
+    private static long paceWallStart;
+    private static double paceSimStart = Double.NaN;
+
+    @BeforeAll
+    public static void initializeSim() {
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Failed to initialize the HAL");
+        }
+        SimHooks.pauseTiming();
+
+        DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+        DriverStationSim.setDsAttached(true);
+        setMode(false, false);
+
+        Robot.ctreConfigs = new CTREConfigs();
+    }
+
+    @AfterEach
+    public void cancelCommands() {
+        CommandScheduler.getInstance().cancelAll();
+    }
+
+    /** Sets what the driver station reports, takes effect right away rather than on the next step. */
+    protected static void setMode(boolean enabled, boolean autonomous) {
+        DriverStationSim.setEnabled(enabled);
+        DriverStationSim.setAutonomous(autonomous);
+        DriverStationSim.notifyNewData();
+        DriverStation.refreshData();
+    }
+
+    /** One robot loop: robotPeriodic then simulationPeriodic, then advance the paused clock. */
+    protected static void step() {
+        DriverStation.refreshData();
+        CommandScheduler.getInstance().run();
+        CurrentBudget.update();
+        RobotSim.update(dt);
+        SimHooks.stepTiming(dt);
+    }
+
+    /**
+     * {@link #step()}, held to at most maxSpeedup times real time. Phoenix 5 sim devices close
+     * their loops on their own wall clock thread and can't be stepped, so this keeps the HAL clock
+     * from running ahead of them: it sleeps until the wall time since pacing started has caught up
+     * with the HAL time since then, divided by maxSpeedup. A loop that ran slow restarts the count
+     * rather than being made up for with a burst.
+     * @param maxSpeedup 0 or less to step as fast as it will go
+     */
+    protected static void pacedStep(double maxSpeedup) {
+        if (maxSpeedup <= 0) {
+            step();
+            return;
+        }
+        if (Double.isNaN(paceSimStart)) {
+            resetPacing();
+        }
+        step();
+
+        double simElapsed = Timer.getFPGATimestamp() - paceSimStart;
+        long remaining = paceWallStart + (long) (simElapsed / maxSpeedup * 1e9) - System.nanoTime();
+        if (remaining < -(long) (dt * 1e9)) {
+            resetPacing();
+        } else if (remaining > 0) {
+            try {
+                Thread.sleep(remaining / 1_000_000, (int) (remaining % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * For the benchmarks' main: {@code --max-speedup N} as passed by -PmaxSpeedup in build.gradle.
+     * @return 1 (real time) if it isn't given
+     */
+    protected static double parseMaxSpeedup(String[] args) {
+        double maxSpeedup = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--max-speedup") && i + 1 < args.length) {
+                maxSpeedup = Double.parseDouble(args[++i]);
+            }
+        }
+        return maxSpeedup;
+    }
+
+    /** Starts pacedStep() counting from now, e.g. after stepping unpaced. */
+    protected static void resetPacing() {
+        paceWallStart = System.nanoTime();
+        paceSimStart = Timer.getFPGATimestamp();
+    }
+
+    protected static void stepFor(double seconds) {
+        double end = Timer.getFPGATimestamp() + seconds;
+        while (Timer.getFPGATimestamp() < end) {
+            step();
+        }
+    }
+
+    /**
+     * Steps until the condition holds, checked after each loop.
+     * @return sim seconds it took, NaN if it didn't happen within timeout
+     */
+    protected static double stepUntil(BooleanSupplier condition, double timeout) {
+        double start = Timer.getFPGATimestamp();
+        while (Timer.getFPGATimestamp() - start < timeout) {
+            step();
+            if (condition.getAsBoolean()) {
+                return Timer.getFPGATimestamp() - start;
+            }
+        }
+        return Double.NaN;
+    }
+}
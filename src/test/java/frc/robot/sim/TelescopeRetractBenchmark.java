@@ -0,0 +1,110 @@
+package frc.robot.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants;
+import frc.robot.commands.RetractTelescopeUntilLimit;
+import frc.robot.subsystems.Pneumatics;
+import frc.robot.subsystems.Telescope;
+
+/**
+ * Retract time of the simulated telescope from the scoring extensions: the old open-loop retract
+ * (brake off, -100% until the switch) against RetractTelescopeUntilLimit (Motion Magic down to the
+ * slow zone, then creep onto the switch). Reports the time to the switch, the speed the carriage
+ * hits it at and the peak sim loop current (the telescope, plus the compressor if it ran). The
+ * Motion Magic retract should be about as quick while hitting the switch far slower.
+ *
+ * <p>Run with {@code ./gradlew retractBenchmark}, paced to real time like AutoRegressionTest,
+ * {@code -PmaxSpeedup=N} runs it up to N times faster (0 for unpaced).
+ */
+public final class TelescopeRetractBenchmark extends SimTestBase {
+    private static final double timeout = 5.0;
+
+    //Name, telescope counts, same as the RobotContainer position groups
+    private static final String[] extensionNames = {"intake out", "mid", "high down", "high"};
+    private static final double[] extensions = {46472, 62854.0, 198316, 271000};
+
+    private TelescopeRetractBenchmark() {}
+
+    public static void main(String[] args) {
+        double maxSpeedup = parseMaxSpeedup(args);
+        initializeSim();
+        setMode(true, false);
+
+        Pneumatics pneumatics = new Pneumatics();
+        Telescope telescope = new Telescope(pneumatics);
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-12s %-13s %10s %14s %14s", "Extension", "Retract", "Time (s)", "Impact (cm/s)", "Peak loop (A)"));
+        for (int i = 0; i < extensionNames.length; i++) {
+            lines.add(run(extensionNames[i], "open loop", extensions[i], telescope, false, maxSpeedup));
+            lines.add(run(extensionNames[i], "motion magic", extensions[i], telescope, true, maxSpeedup));
+        }
+
+        System.out.println();
+        lines.forEach(System.out::println);
+        HAL.shutdown();
+        System.exit(0);
+    }
+
+    private static String run(String name, String retractName, double extension, Telescope telescope, boolean motionMagic, double maxSpeedup) {
+        CommandScheduler scheduler = CommandScheduler.getInstance();
+        scheduler.cancelAll();
+
+        //Out to the extension and braked, like the end of a scoring group
+        Command extend = telescope.extendArmToDistance_Command(extension)
+            .until(() -> Math.abs(telescope.getEncoder() - extension) < 500 && Math.abs(telescope.getVelocity()) < 200);
+        extend.schedule();
+        double start = Timer.getFPGATimestamp();
+        while (extend.isScheduled() && Timer.getFPGATimestamp() - start < timeout) {
+            pacedStep(maxSpeedup);
+        }
+        extend.cancel();
+        for (int i = 0; i < 25; i++) {
+            pacedStep(maxSpeedup);
+        }
+
+        RetractTelescopeUntilLimit retract = new RetractTelescopeUntilLimit(telescope);
+        if (motionMagic) {
+            retract.schedule();
+        } else {
+            //What RetractTelescopeUntilLimit did before, no soft limit back then
+            telescope.setReverseSoftLimit(false);
+            telescope.setBrake(Value.kReverse);
+            telescope.setPercent(-1);
+        }
+
+        double cmPerSecond = 10.0 / Constants.kTelescope.countsPerCm; //from counts per 100ms
+        double impact = 0, peakCurrent = 0;
+        start = Timer.getFPGATimestamp();
+        while (!telescope.isLimitEngaged() && Timer.getFPGATimestamp() - start < timeout) {
+            impact = Math.abs(telescope.getVelocity()) * cmPerSecond;
+            pacedStep(maxSpeedup);
+            peakCurrent = Math.max(peakCurrent, RobotSim.getLastLoopCurrent());
+        }
+        double time = Timer.getFPGATimestamp() - start;
+        boolean reached = telescope.isLimitEngaged();
+
+        if (motionMagic) {
+            retract.cancel();
+        } else {
+            telescope.setPercent(0);
+            telescope.setBrake(Value.kForward);
+            telescope.setReverseSoftLimit(true);
+        }
+        pacedStep(maxSpeedup);
+
+        return String.format("%-12s %-13s %10s %14.1f %14.1f",
+            name,
+            retractName,
+            reached ? String.format("%.2f", time) : "timeout",
+            impact,
+            peakCurrent);
+    }
+}
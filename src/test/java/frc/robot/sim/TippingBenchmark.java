@@ -0,0 +1,129 @@
+package frc.robot.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants;
+import frc.robot.TippingModel;
+import frc.robot.commands.TeleopSwerve;
+import frc.robot.subsystems.Swerve;
+
+/**
+ * Tipping margin of the simulated drivetrain with the superstructure held at the scoring poses,
+ * with and without Swerve's tipping model. The driver slams the stick: full forward, full
+ * reverse, full strafe, let go. Each loop the measured chassis acceleration goes through the
+ * model's zero moment point, the report is the closest it got to the wheels (negative would have
+ * tipped), with the peak acceleration and top speed so a stowed robot can be seen to lose nothing.
+ *
+ * <p>Run with {@code ./gradlew tippingBenchmark}, paced to real time like AutoRegressionTest,
+ * {@code -PmaxSpeedup=N} runs it up to N times faster (0 for unpaced).
+ */
+public final class TippingBenchmark extends SimTestBase {
+    private static final double duration = 5.0;
+
+    //Name, arm fake degrees, telescope counts, same as the RobotContainer position groups
+    private static final String[] poseNames = {"stowed", "intake standing", "mid", "high"};
+    private static final double[] poseArm = {0, 120.5, 261.0, 281.0};
+    private static final double[] poseTelescope = {0, 0, 62854.0, 271000};
+
+    private TippingBenchmark() {}
+
+    public static void main(String[] args) {
+        double maxSpeedup = parseMaxSpeedup(args);
+        initializeSim();
+        setMode(true, false);
+
+        Swerve swerve = new Swerve();
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-16s %8s %10s %10s %12s %12s %10s",
+            "Pose", "Limiter", "CoG h (m)", "Brake lim", "Peak accel", "Margin (m)", "Top speed"));
+        for (int i = 0; i < poseNames.length; i++) {
+            double arm = poseArm[i];
+            double telescopeCm = poseTelescope[i] / Constants.kTelescope.countsPerCm;
+            TippingModel model = new TippingModel(() -> arm, () -> telescopeCm);
+            model.update();
+            lines.add(run(poseNames[i], swerve, model, false, maxSpeedup));
+            lines.add(run(poseNames[i], swerve, model, true, maxSpeedup));
+        }
+
+        System.out.println();
+        lines.forEach(System.out::println);
+        HAL.shutdown();
+        System.exit(0);
+    }
+
+    private static String run(String name, Swerve swerve, TippingModel model, boolean limited, double maxSpeedup) {
+        CommandScheduler scheduler = CommandScheduler.getInstance();
+        scheduler.cancelAll();
+
+        //Let the last run coast to a stop
+        swerve.setTippingModel(null);
+        for (int i = 0; i < 50; i++) {
+            swerve.drive(new Translation2d(), 0, true, true);
+            pacedStep(maxSpeedup);
+        }
+        swerve.configYaw(0);
+        swerve.resetOdometry(new Pose2d());
+        swerve.setTippingModel(limited ? model : null);
+
+        double[] sticks = new double[3];
+        TeleopSwerve teleop = new TeleopSwerve(swerve, () -> sticks[0], () -> sticks[1], () -> sticks[2], () -> false);
+        teleop.schedule();
+
+        double dt = TimedRobot.kDefaultPeriod;
+        double startTime = Timer.getFPGATimestamp();
+        double lastVx = 0, lastVy = 0;
+        double peakAccel = 0, minMargin = Double.POSITIVE_INFINITY, topSpeed = 0;
+        while (Timer.getFPGATimestamp() - startTime < duration) {
+            script(Timer.getFPGATimestamp() - startTime, sticks);
+            pacedStep(maxSpeedup);
+
+            //Robot frame, the robot doesn't turn in the script
+            ChassisSpeeds speeds = Constants.kSwerve.swerveKinematics.toChassisSpeeds(swerve.getModuleStates());
+            double ax = (speeds.vxMetersPerSecond - lastVx) / dt;
+            double ay = (speeds.vyMetersPerSecond - lastVy) / dt;
+            lastVx = speeds.vxMetersPerSecond;
+            lastVy = speeds.vyMetersPerSecond;
+
+            peakAccel = Math.max(peakAccel, Math.hypot(ax, ay));
+            minMargin = Math.min(minMargin, model.getMargin(ax, ay));
+            topSpeed = Math.max(topSpeed, Math.hypot(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond));
+        }
+        teleop.cancel();
+        swerve.setTippingModel(null);
+
+        return String.format("%-16s %8s %10.2f %10s %12.2f %12.3f %10.2f",
+            name,
+            limited ? "on" : "off",
+            model.getCogHeight(),
+            Double.isInfinite(model.getMinAccelX()) ? "none" : String.format("%.1f", -model.getMinAccelX()),
+            peakAccel,
+            minMargin,
+            topSpeed);
+    }
+
+    /**
+     * Stick positions (translation, strafe, rotation) at t seconds into the run.
+     */
+    private static void script(double t, double[] sticks) {
+        double translation = 0, strafe = 0;
+        if (t < 1.5) {
+            translation = 1.0;
+        } else if (t < 3.0) {
+            translation = -1.0;
+        } else if (t < 4.0) {
+            strafe = 1.0;
+        }
+        sticks[0] = translation;
+        sticks[1] = strafe;
+        sticks[2] = 0;
+    }
+}
@@ -0,0 +1,71 @@
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.sim.SimTestBase;
+
+/**
+ * Drives the simulated swerve in the sim harness: module physics, the gyro integration and
+ * odometry have to agree on which way the robot went, and the loop has to step faster than real time.
+ */
+class SwerveSimTest extends SimTestBase {
+    private static Swerve swerve;
+
+    @BeforeAll
+    static void createSwerve() {
+        swerve = new Swerve();
+    }
+
+    @BeforeEach
+    void stopAtOrigin() {
+        setMode(true, false);
+        for (int i = 0; i < 50; i++) {
+            swerve.drive(new Translation2d(), 0, true, true);
+            step();
+        }
+        swerve.configYaw(0);
+        swerve.resetOdometry(new Pose2d());
+    }
+
+    @Test
+    void drivesForwardFasterThanRealTime() {
+        double duration = 2.0;
+        double start = Timer.getFPGATimestamp();
+        long wallStart = System.nanoTime();
+        while (Timer.getFPGATimestamp() - start < duration) {
+            swerve.drive(new Translation2d(2.0, 0), 0, true, true);
+            step();
+        }
+        double wallSeconds = (System.nanoTime() - wallStart) * 1e-9;
+
+        Pose2d pose = swerve.getPose();
+        assertTrue(pose.getX() > 1.0, "Only drove " + pose.getX() + " m forward");
+        assertTrue(pose.getX() < 2.0 * duration + 0.1, "Drove further than the command allows: " + pose.getX() + " m");
+        assertEquals(0, pose.getY(), 0.1);
+        assertEquals(0, pose.getRotation().getDegrees(), 2.0);
+        assertTrue(wallSeconds < duration, duration + " s of sim took " + wallSeconds + " s of wall time");
+    }
+
+    @Test
+    void gyroFollowsRotation() {
+        double start = Timer.getFPGATimestamp();
+        while (Timer.getFPGATimestamp() - start < 1.0) {
+            swerve.drive(new Translation2d(), 1.0, true, true);
+            step();
+        }
+
+        //Counterclockwise positive, like the kinematics
+        double yaw = swerve.getYaw().getDegrees();
+        assertTrue(yaw > 10, "Yaw only reached " + yaw + " degrees");
+        assertTrue(swerve.getYawRate() > 0, "Yaw rate " + swerve.getYawRate() + " doesn't match the turn");
+        assertEquals(0, swerve.getPose().getTranslation().getNorm(), 0.15);
+    }
+}